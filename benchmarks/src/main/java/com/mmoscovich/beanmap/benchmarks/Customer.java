@@ -0,0 +1,39 @@
+package com.mmoscovich.beanmap.benchmarks;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Bean used as input of the benchmarks (see {@link Payload}).
+ * 
+ * @author Martin Moscovich
+ *
+ */
+@Data
+public class Customer {
+	private long id;
+	private String name;
+	private String email;
+	private double score;
+	private boolean active;
+	private Address address;
+	private List<String> tags;
+	private List<Order> orders;
+	/** Used to build nested inputs (one more level of depth each) */
+	private Customer referrer;
+	
+	@Data
+	public static class Address {
+		private String street;
+		private String city;
+		private String zip;
+	}
+	
+	@Data
+	public static class Order {
+		private String code;
+		private double price;
+		private int quantity;
+	}
+}
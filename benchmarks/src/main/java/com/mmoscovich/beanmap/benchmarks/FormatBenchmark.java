@@ -0,0 +1,98 @@
+package com.mmoscovich.beanmap.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mmoscovich.beanmap.utils.CompiledTemplate;
+import com.mmoscovich.beanmap.utils.FieldProjection;
+import com.mmoscovich.beanmap.utils.JsonTransformer;
+import com.mmoscovich.beanmap.utils.ObjectTransformer;
+
+/**
+ * Benchmarks of the streaming transformations of {@link JsonTransformer} with text JSON and binary formats.
+ * <p>The records are encoded once in the format, and each transformation reads them and writes the result in the same format.
+ * There is a single result for each format and payload size (amount of records and collection size).</p>
+ * 
+ * @author Martin Moscovich
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+	
+	public enum Format {
+		JSON(new JsonFactory()), SMILE(new SmileFactory()), CBOR(new CBORFactory());
+		
+		private final JsonFactory factory;
+		
+		private Format(JsonFactory factory) {
+			this.factory = factory;
+		}
+	}
+	
+	@Param({"JSON", "SMILE", "CBOR"})
+	public Format format;
+	
+	/** Amount of records of the input (payload size) */
+	@Param({"1", "100"})
+	public int records;
+	
+	/** Size of the collection of each record */
+	@Param({"5", "50"})
+	public int items;
+	
+	private CompiledTemplate compiled;
+	private FieldProjection projection;
+	private JsonFactory factory;
+	private byte[] encoded;
+	
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setUp() throws Exception {
+		compiled = ObjectTransformer.compile(new ObjectMapper().readValue(Payload.TEMPLATE, Map.class));
+		projection = FieldProjection.compile(Payload.FIELDS);
+		factory = format.factory;
+		encoded = new ObjectMapper(factory).writeValueAsBytes(new Payload(records, items, 1).maps);
+	}
+	
+	@Benchmark
+	public byte[] transform() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length);
+		JsonTransformer.transform(compiled, new ByteArrayInputStream(encoded), factory, out, factory);
+		return out.toByteArray();
+	}
+	
+	@Benchmark
+	public Object transformToObject() throws Exception {
+		return JsonTransformer.transformToObject(compiled, new ByteArrayInputStream(encoded), factory);
+	}
+	
+	@Benchmark
+	public byte[] selectFields() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length);
+		JsonTransformer.selectFields(projection, new ByteArrayInputStream(encoded), factory, out, factory);
+		return out.toByteArray();
+	}
+}
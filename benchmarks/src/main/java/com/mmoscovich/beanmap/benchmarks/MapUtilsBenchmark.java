@@ -0,0 +1,80 @@
+package com.mmoscovich.beanmap.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mmoscovich.beanmap.utils.MapUtils;
+
+/**
+ * Benchmarks of the {@link MapUtils} conversions of a single record.
+ * <p>The conversions from beans use the bean version of the record and {@link #flattenMap()} the Map version.</p>
+ * 
+ * @author Martin Moscovich
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapUtilsBenchmark {
+	
+	/** Size of the collection of the record */
+	@Param({"5", "50"})
+	public int items;
+	
+	/** Nesting depth of the record (see {@link Payload#Payload(int, int, int)}) */
+	@Param({"1", "4"})
+	public int depth;
+	
+	private Customer bean;
+	private Map<String, Object> map;
+	
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setUp() throws Exception {
+		Payload payload = new Payload(1, items, depth);
+		bean = payload.beans.get(0);
+		map = (Map<String, Object>)payload.maps.get(0);
+	}
+	
+	@Benchmark
+	public Object flattenMap() {
+		return MapUtils.flattenMap(map);
+	}
+	
+	@Benchmark
+	public Object beanToMap() {
+		return MapUtils.beanToMap(bean);
+	}
+	
+	@Benchmark
+	public Object asMap() {
+		return MapUtils.asMap(bean).get("name");
+	}
+	
+	@Benchmark
+	public Object beanToFlatMap() {
+		return MapUtils.beanToFlatMap(bean);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public Object beanToFlatMapThreads() {
+		return MapUtils.beanToFlatMap(bean);
+	}
+}
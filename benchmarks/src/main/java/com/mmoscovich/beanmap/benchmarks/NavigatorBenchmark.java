@@ -0,0 +1,75 @@
+package com.mmoscovich.beanmap.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mmoscovich.beanmap.benchmarks.Payload.Source;
+import com.mmoscovich.beanmap.utils.ObjectNavigator;
+import com.mmoscovich.beanmap.utils.PropertyPath;
+
+/**
+ * Benchmarks of {@link ObjectNavigator#findValue(Object, String)}, using the most nested property of a record.
+ * 
+ * @author Martin Moscovich
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavigatorBenchmark {
+	
+	/** Nesting depth of the record (see {@link Payload#Payload(int, int, int)}) */
+	@Param({"1", "4"})
+	public int depth;
+	
+	@Param({"MAP", "BEAN"})
+	public Source source;
+	
+	private Object record;
+	private String deepPath;
+	private PropertyPath path;
+	
+	@Setup
+	public void setUp() throws Exception {
+		Payload payload = new Payload(1, 5, depth);
+		record = payload.record(source);
+		deepPath = payload.deepPath;
+		path = PropertyPath.parse(deepPath);
+	}
+	
+	@Benchmark
+	public Object findValue() {
+		return ObjectNavigator.findValue(record, deepPath);
+	}
+	
+	@Benchmark
+	public Object findValueParsed() {
+		return ObjectNavigator.findValue(record, path);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public Object findValueThreads() {
+		return ObjectNavigator.findValue(record, deepPath);
+	}
+	
+	@Benchmark
+	public Object getProperties() {
+		return ObjectNavigator.getProperties(record);
+	}
+}
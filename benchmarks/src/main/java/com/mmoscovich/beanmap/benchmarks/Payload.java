@@ -0,0 +1,115 @@
+package com.mmoscovich.beanmap.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Inputs of the benchmarks, built from an amount of records, collection size and nesting depth.
+ * <p>Each benchmark declares as parameters only the dimensions it depends on (so no combination is measured twice)
+ * and builds its payload once per trial, so the benchmarks only measure the library.</p>
+ * 
+ * @author Martin Moscovich
+ *
+ */
+public class Payload {
+	
+	public enum Source { MAP, BEAN }
+	
+	/** Template used by the transformation benchmarks */
+	public static final String TEMPLATE = "{\"id\": \"=\", \"name\": \"=\", \"city\": \"=address.city\", \"label\": \"${name} <${email}>\", "
+			+ "\"orders\": {\"_root\": \"orders\", \"code\": \"=\", \"total\": \"=price\"}, \"referrer.name\": \"=referrer.name?\"}";
+	
+	/** Fields used by the selection benchmarks */
+	public static final List<String> FIELDS = Arrays.asList("id", "name", "address.city", "orders.code");
+	
+	/** String template used by the String template benchmarks */
+	public static final String STRING_TEMPLATE = "${name} <${email}> lives in ${address.city} (${address.zip?unknown})";
+	
+	private static final ObjectMapper mapper = new ObjectMapper();
+	
+	/** Size of the collection of each record */
+	private final int items;
+	
+	/** The records as beans */
+	public final List<Customer> beans;
+	/** The records as nested Maps (as they would be parsed from JSON) */
+	public final List<Object> maps;
+	/** The records as a JSON array */
+	public final String json;
+	/** Path to the name of the most nested referrer of a record */
+	public final String deepPath;
+	
+	/**
+	 * Builds the payload.
+	 *
+	 * @param records amount of records of the input (payload size)
+	 * @param items size of the collection of each record
+	 * @param depth nesting depth of each record (amount of chained referrers, including the record itself)
+	 * @throws JsonProcessingException if the records cannot be serialized
+	 */
+	public Payload(int records, int items, int depth) throws JsonProcessingException {
+		this.items = items;
+		beans = new ArrayList<>(records);
+		maps = new ArrayList<>(records);
+		for(int i = 0; i < records; i++) {
+			Customer customer = customer(i, depth);
+			beans.add(customer);
+			maps.add(mapper.convertValue(customer, Map.class));
+		}
+
+		json = mapper.writeValueAsString(maps);
+
+		StringBuilder path = new StringBuilder();
+		for(int i = 1; i < depth; i++) path.append("referrer.");
+		deepPath = path.append("name").toString();
+	}
+	
+	/**
+	 * @param source the kind of source
+	 * @return the records, as beans or Maps depending on the source
+	 */
+	public List<?> input(Source source) {
+		return (source == Source.BEAN)?beans:maps;
+	}
+	
+	/**
+	 * @param source the kind of source
+	 * @return the first record, as bean or Map depending on the source
+	 */
+	public Object record(Source source) {
+		return input(source).get(0);
+	}
+	
+	private Customer customer(int id, int depth) {
+		Customer customer = new Customer();
+		customer.setId(id);
+		customer.setName("Customer " + id);
+		customer.setEmail("customer" + id + "@example.com");
+		customer.setScore(id * 1.5);
+		customer.setActive(id % 2 == 0);
+		customer.setTags(Arrays.asList("tag" + (id % 3), "tag" + (id % 5)));
+
+		Customer.Address address = new Customer.Address();
+		address.setStreet("Street " + id);
+		address.setCity("City " + (id % 10));
+		customer.setAddress(address);
+
+		List<Customer.Order> orders = new ArrayList<>(items);
+		for(int i = 0; i < items; i++) {
+			Customer.Order order = new Customer.Order();
+			order.setCode("O-" + id + "-" + i);
+			order.setPrice(i * 10.25);
+			order.setQuantity(i + 1);
+			orders.add(order);
+		}
+		customer.setOrders(orders);
+
+		if(depth > 1) customer.setReferrer(customer(id + 1000000, depth - 1));
+		return customer;
+	}
+}
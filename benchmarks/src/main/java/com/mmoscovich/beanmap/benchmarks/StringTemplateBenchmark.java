@@ -0,0 +1,64 @@
+package com.mmoscovich.beanmap.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mmoscovich.beanmap.benchmarks.Payload.Source;
+import com.mmoscovich.beanmap.utils.CompiledStringTemplate;
+import com.mmoscovich.beanmap.utils.StringTemplate;
+
+/**
+ * Benchmarks of {@link StringTemplate#replace(String, Object)} and {@link CompiledStringTemplate}.
+ * <p>The template only reads the first level of a record, so the size of the payload does not change them.</p>
+ * 
+ * @author Martin Moscovich
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringTemplateBenchmark {
+	
+	@Param({"MAP", "BEAN"})
+	public Source source;
+	
+	private Object record;
+	private CompiledStringTemplate compiled;
+	
+	@Setup
+	public void setUp() throws Exception {
+		record = new Payload(1, 5, 1).record(source);
+		compiled = CompiledStringTemplate.compile(Payload.STRING_TEMPLATE);
+	}
+	
+	@Benchmark
+	public String replace() {
+		return StringTemplate.replace(Payload.STRING_TEMPLATE, record);
+	}
+	
+	@Benchmark
+	public String render() {
+		return compiled.render(record);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public String renderThreads() {
+		return compiled.render(record);
+	}
+}
@@ -0,0 +1,115 @@
+package com.mmoscovich.beanmap.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmoscovich.beanmap.benchmarks.Payload.Source;
+import com.mmoscovich.beanmap.utils.CompiledTemplate;
+import com.mmoscovich.beanmap.utils.FieldProjection;
+import com.mmoscovich.beanmap.utils.JsonTransformer;
+import com.mmoscovich.beanmap.utils.ObjectTransformer;
+
+/**
+ * Benchmarks of {@link ObjectTransformer} and {@link JsonTransformer}, with and without compiling the template beforehand.
+ * 
+ * @author Martin Moscovich
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformerBenchmark {
+	
+	/** Amount of records of the input (payload size) */
+	@Param({"1", "100"})
+	public int records;
+	
+	/** Size of the collection of each record */
+	@Param({"5", "50"})
+	public int items;
+	
+	/** Nesting depth of each record (see {@link Payload#Payload(int, int, int)}) */
+	@Param({"1", "4"})
+	public int depth;
+	
+	@Param({"MAP", "BEAN"})
+	public Source source;
+	
+	private List<?> input;
+	private String json;
+	private Map<String, Object> templateMap;
+	private CompiledTemplate compiled;
+	private FieldProjection projection;
+	
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setUp() throws Exception {
+		Payload payload = new Payload(records, items, depth);
+		input = payload.input(source);
+		json = payload.json;
+		
+		templateMap = new ObjectMapper().readValue(Payload.TEMPLATE, Map.class);
+		compiled = ObjectTransformer.compile(templateMap);
+		projection = FieldProjection.compile(Payload.FIELDS);
+	}
+	
+	@Benchmark
+	public Object transform() throws Exception {
+		return ObjectTransformer.transform(templateMap, input);
+	}
+	
+	@Benchmark
+	public Object transformCompiled() throws Exception {
+		return compiled.transform(input);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public Object transformCompiledThreads() throws Exception {
+		return compiled.transform(input);
+	}
+	
+	@Benchmark
+	public Object jsonTransform() throws Exception {
+		return JsonTransformer.transform(Payload.TEMPLATE, json);
+	}
+	
+	@Benchmark
+	public Object jsonTransformCompiled() throws Exception {
+		return JsonTransformer.transform(compiled, json);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public Object jsonTransformCompiledThreads() throws Exception {
+		return JsonTransformer.transform(compiled, json);
+	}
+	
+	@Benchmark
+	public Object selectFields() throws Exception {
+		return JsonTransformer.selectFields(json, Payload.FIELDS);
+	}
+	
+	@Benchmark
+	public Object selectFieldsCompiled() throws Exception {
+		return JsonTransformer.selectFields(projection, json);
+	}
+}
@@ -0,0 +1,68 @@
+package com.mmoscovich.beanmap.utils;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Counters of a file transformation (see {@link BatchTransformer}).
+ * <p>It is reported after each chunk is written and returned when the file is finished. Instances are immutable snapshots.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+@Getter
+@ToString
+public class BatchProgress {
+
+	/** The size of the input file, in bytes */
+	private final long totalBytes;
+
+	/** The amount of input bytes already transformed and written */
+	private final long bytesRead;
+
+	/** The amount of output bytes written */
+	private final long bytesWritten;
+
+	/** The amount of records written */
+	private final long records;
+
+	/** The amount of chunks written */
+	private final long chunks;
+
+	/** The time since the transformation started, in nanoseconds */
+	private final long nanos;
+
+	BatchProgress(long totalBytes, long bytesRead, long bytesWritten, long records, long chunks, long nanos) {
+		this.totalBytes = totalBytes;
+		this.bytesRead = bytesRead;
+		this.bytesWritten = bytesWritten;
+		this.records = records;
+		this.chunks = chunks;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return the fraction of the input already transformed (between 0 and 1)
+	 */
+	public double getCompletion() {
+		return (totalBytes > 0)?(double)bytesRead / totalBytes:1;
+	}
+
+	/**
+	 * @return the records written per second
+	 */
+	public double getRecordsPerSecond() {
+		return perSecond(records);
+	}
+
+	/**
+	 * @return the input bytes transformed per second
+	 */
+	public double getBytesPerSecond() {
+		return perSecond(bytesRead);
+	}
+
+	private double perSecond(long amount) {
+		return (nanos > 0)?amount * 1e9 / nanos:0;
+	}
+}
@@ -0,0 +1,404 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Applies a template to the records of a JSON file on disk, writing the results to another file.
+ * <p>The input file is memory-mapped, so it is never copied into a String. Newline-delimited JSON is split on line boundaries
+ * into chunks of about {@link #withChunkSize(int) chunkSize} bytes, which are transformed in parallel by the executor
+ * (all of them with the same compiled template) and written in the same order as the input through a file channel.
+ * Only a few chunks are in memory at the same time (twice the parallelism of the executor), regardless of the size of the file.</p>
+ * <p>A JSON array cannot be split without parsing it, so it is transformed sequentially (but still read from the mapped file).</p>
+ * <p>Instances are immutable and thread-safe. It can also be run from the command line (see {@link #main(String[])}).</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public class BatchTransformer {
+
+	/** Default size of the chunks (32 MB) */
+	public static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+	/** Maximum size of a chunk. A mapping cannot be larger than 2 GB, so there must be room for the rest of the last line */
+	private static final int MAX_CHUNK_SIZE = 1024 * 1024 * 1024;
+
+	/** Maximum size of a chunk including the rest of its last line (the maximum size of a mapping) */
+	private static final int MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+
+	/** Size of the windows mapped while looking for a line break or reading an array */
+	private static final int WINDOW_SIZE = 64 * 1024;
+
+	private final CompiledTemplate template;
+	private final JsonLayout layout;
+	private final Executor executor;
+	private final int chunkSize;
+	private final Consumer<BatchProgress> progressListener;
+
+	/**
+	 * Creates a transformer of newline-delimited JSON files that uses the common ForkJoinPool.
+	 *
+	 * @param template the compiled template (see {@link JsonTransformer#compile(String)})
+	 */
+	public BatchTransformer(CompiledTemplate template) {
+		this(template, JsonLayout.NDJSON, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, null);
+	}
+
+	private BatchTransformer(CompiledTemplate template, JsonLayout layout, Executor executor, int chunkSize, Consumer<BatchProgress> progressListener) {
+		if(template == null) throw new IllegalArgumentException("The template cannot be null");
+		if(layout == null) throw new IllegalArgumentException("The layout cannot be null");
+		if(executor == null) throw new IllegalArgumentException("The executor cannot be null");
+		if(chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) throw new IllegalArgumentException("The chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+
+		this.template = template;
+		this.layout = layout;
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * @param layout the layout of the input and the output files (newline-delimited JSON by default)
+	 * @return a copy of this transformer with the specified layout
+	 */
+	public BatchTransformer withLayout(JsonLayout layout) {
+		return new BatchTransformer(template, layout, executor, chunkSize, progressListener);
+	}
+
+	/**
+	 * @param executor the executor that transforms the chunks (the common ForkJoinPool by default)
+	 * @return a copy of this transformer with the specified executor
+	 */
+	public BatchTransformer withExecutor(Executor executor) {
+		return new BatchTransformer(template, layout, executor, chunkSize, progressListener);
+	}
+
+	/**
+	 * @param chunkSize the approximate size of the chunks, in bytes (a chunk is extended until the end of its last line)
+	 * @return a copy of this transformer with the specified chunk size
+	 */
+	public BatchTransformer withChunkSize(int chunkSize) {
+		return new BatchTransformer(template, layout, executor, chunkSize, progressListener);
+	}
+
+	/**
+	 * @param progressListener called by the thread that writes the output after each chunk is written (may be <code>null</code>)
+	 * @return a copy of this transformer with the specified listener
+	 */
+	public BatchTransformer withProgressListener(Consumer<BatchProgress> progressListener) {
+		return new BatchTransformer(template, layout, executor, chunkSize, progressListener);
+	}
+
+	/**
+	 * Transforms the records of the input file, writing the results (UTF-8) to the output file with the same layout.
+	 * <p>The output file is created or replaced. If an error occurs, the results of the previous chunks have already been written
+	 * and the chunks that were being transformed are discarded.</p>
+	 *
+	 * @param input the input file
+	 * @param output the output file
+	 * @return the final counters
+	 * @throws InvalidInputException if the input cannot be parsed as JSON or it does not have the layout.
+	 * @throws ObjectTransformerException if the files cannot be read or written, or there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public BatchProgress transform(Path input, Path output) throws ObjectTransformerException {
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return (layout == JsonLayout.NDJSON)?transformChunks(in, out):transformSequentially(in, out);
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		}
+	}
+
+	/**
+	 * Splits the input in chunks, transforms them in parallel and writes them in order.
+	 */
+	private BatchProgress transformChunks(FileChannel in, FileChannel out) throws IOException, ObjectTransformerException {
+		long start = System.nanoTime();
+		long size = in.size();
+		int window = 2 * parallelism(executor);
+
+		Deque<CompletableFuture<Chunk>> pending = new ArrayDeque<>(window);
+		long position = 0;
+		long bytesRead = 0, bytesWritten = 0, records = 0, chunks = 0;
+		BatchProgress progress = new BatchProgress(size, 0, 0, 0, 0, 0);
+
+		try {
+			while(position < size || !pending.isEmpty()) {
+				while(position < size && pending.size() < window) {
+					long limit = Math.min(position + MAX_MAPPED_SIZE, size);
+					long end = lineEnd(in, Math.min(position + chunkSize, size), limit);
+					if(end < 0) {
+						if(limit < size) throw new InvalidInputException("The chunk starting at byte " + position + " is larger than 2 GB (its last line has no line break)", null);
+						end = size;
+					}
+					Chunk chunk = new Chunk(position, end);
+					pending.add(CompletableFuture.supplyAsync(() -> chunk.transform(in), executor));
+					position = end;
+				}
+
+				Chunk chunk = join(pending.poll());
+				ByteBuffer result = chunk.output.buffer();
+				while(result.hasRemaining()) out.write(result);
+
+				bytesRead += chunk.end - chunk.start;
+				bytesWritten += chunk.output.size();
+				records += chunk.records;
+				chunks++;
+				progress = new BatchProgress(size, bytesRead, bytesWritten, records, chunks, System.nanoTime() - start);
+				if(progressListener != null) progressListener.accept(progress);
+			}
+		} finally {
+			// The results of the chunks after an error are not used
+			for(CompletableFuture<Chunk> future : pending) future.cancel(false);
+		}
+		return progress;
+	}
+
+	/**
+	 * Transforms a JSON array sequentially, reading it through consecutive mappings.
+	 */
+	private BatchProgress transformSequentially(FileChannel in, FileChannel out) throws IOException, ObjectTransformerException {
+		long start = System.nanoTime();
+		long size = in.size();
+
+		JsonTransformer.CountingOutputStream output = new JsonTransformer.CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), WINDOW_SIZE));
+		long records = JsonTransformer.transformRecords(template, new MappedInputStream(in, size, chunkSize), output, layout);
+		output.flush();
+
+		BatchProgress progress = new BatchProgress(size, size, output.count, records, 1, System.nanoTime() - start);
+		if(progressListener != null) progressListener.accept(progress);
+		return progress;
+	}
+
+	/**
+	 * Finds the end of the line that contains the specified position, looking for the line break before the limit.
+	 *
+	 * @return the position after the line break, or <code>-1</code> if there is none before the limit
+	 */
+	private static long lineEnd(FileChannel channel, long position, long limit) throws IOException {
+		while(position < limit) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, limit - position));
+			while(buffer.hasRemaining()) {
+				if(buffer.get() == '\n') return position + buffer.position();
+			}
+			position += buffer.limit();
+		}
+		return -1;
+	}
+
+	/**
+	 * Waits for the chunk, unwrapping the errors of the transformation.
+	 */
+	private static Chunk join(CompletableFuture<Chunk> future) throws ObjectTransformerException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof UncheckedTransformerException) throw ((UncheckedTransformerException)cause).getCause();
+			throw new ObjectTransformerException(cause);
+		}
+	}
+
+	/**
+	 * @return the amount of threads of the executor (the available processors if it is not a ForkJoinPool)
+	 */
+	private static int parallelism(Executor executor) {
+		return (executor instanceof ForkJoinPool)?((ForkJoinPool)executor).getParallelism():Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Transforms a file from the command line, reporting the progress to the standard error.
+	 * <p>Usage: <code>BatchTransformer [--array] [--threads N] [--chunk-mb N] template.json input output</code></p>
+	 * <p>The input is newline-delimited JSON unless <code>--array</code> is specified.</p>
+	 *
+	 * @param args the arguments
+	 */
+	public static void main(String[] args) {
+		JsonLayout layout = JsonLayout.NDJSON;
+		int threads = 0, chunkSize = DEFAULT_CHUNK_SIZE;
+		int i = 0;
+		try {
+			for(; i < args.length && args[i].startsWith("--"); i++) {
+				switch(args[i]) {
+					case "--array": layout = JsonLayout.ARRAY; break;
+					case "--threads": threads = Integer.parseInt(args[++i]); break;
+					case "--chunk-mb": chunkSize = chunkSize(Long.parseLong(args[++i])); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			if(args.length - i != 3) throw new IllegalArgumentException("Expected the template, input and output files");
+		} catch(RuntimeException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: BatchTransformer [--array] [--threads N] [--chunk-mb N] template.json input output");
+			System.exit(2);
+			return;
+		}
+
+		ForkJoinPool pool = (threads > 0)?new ForkJoinPool(threads):ForkJoinPool.commonPool();
+		try {
+			CompiledTemplate template = JsonTransformer.parseTemplate(new String(Files.readAllBytes(Paths.get(args[i])), StandardCharsets.UTF_8));
+			BatchProgress result = new BatchTransformer(template).withLayout(layout).withExecutor(pool).withChunkSize(chunkSize)
+					.withProgressListener(progress -> System.err.println(describe(progress)))
+					.transform(Paths.get(args[i + 1]), Paths.get(args[i + 2]));
+			System.err.println("Done: " + describe(result));
+		} catch(IOException | ObjectTransformerException | IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			if(e.getCause() != null) System.err.println("Cause: " + e.getCause().getMessage());
+			System.exit(1);
+		} finally {
+			if(pool != ForkJoinPool.commonPool()) pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the size in bytes of a chunk of the specified MB
+	 * @throws IllegalArgumentException if it is not between 1 MB and the maximum size
+	 */
+	private static int chunkSize(long megabytes) {
+		if(megabytes <= 0 || megabytes > MAX_CHUNK_SIZE / (1024 * 1024)) throw new IllegalArgumentException("The chunk size must be between 1 and " + (MAX_CHUNK_SIZE / (1024 * 1024)) + " MB");
+		return (int)(megabytes * 1024 * 1024);
+	}
+
+	private static String describe(BatchProgress progress) {
+		return String.format("%.1f%% (%d chunks, %d records, %d bytes written, %.0f records/s, %.1f MB/s)", progress.getCompletion() * 100,
+				progress.getChunks(), progress.getRecords(), progress.getBytesWritten(), progress.getRecordsPerSecond(), progress.getBytesPerSecond() / (1024 * 1024));
+	}
+
+	/**
+	 * A range of lines of the input and its results.
+	 */
+	private class Chunk {
+		private final long start;
+		private final long end;
+		private ChunkOutput output;
+		private long records;
+
+		Chunk(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		Chunk transform(FileChannel channel) {
+			try {
+				int length = (int)(end - start);
+				output = new ChunkOutput(length);
+				records = JsonTransformer.transformRecords(template, new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, length)), output, JsonLayout.NDJSON);
+				return this;
+			} catch (InvalidInputException e) {
+				throw new UncheckedTransformerException(new InvalidInputException("The chunk starting at byte " + start + " could not be parsed", e.getCause()));
+			} catch (ObjectTransformerException e) {
+				throw new UncheckedTransformerException(e);
+			} catch (IOException e) {
+				throw new UncheckedTransformerException(new ObjectTransformerException("There was a problem while reading the input", e));
+			}
+		}
+	}
+
+	/**
+	 * Buffer of the results of a chunk, which can be written to a channel without copying it.
+	 */
+	private static class ChunkOutput extends ByteArrayOutputStream {
+		ChunkOutput(int size) {
+			super(Math.max(size, 32));
+		}
+
+		ByteBuffer buffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+
+	/**
+	 * Input stream that reads a buffer (eg. a mapped region of a file).
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining()?(buffer.get() & 0xFF):-1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(len == 0) return 0;
+			if(!buffer.hasRemaining()) return -1;
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * Input stream that reads a file through consecutive mappings of the specified size.
+	 */
+	private static class MappedInputStream extends InputStream {
+		private final FileChannel channel;
+		private final long size;
+		private final int mappingSize;
+		private long position;
+		private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+		MappedInputStream(FileChannel channel, long size, int mappingSize) {
+			this.channel = channel;
+			this.size = size;
+			this.mappingSize = mappingSize;
+		}
+
+		/**
+		 * Maps the next region if the current one was consumed.
+		 *
+		 * @return <code>false</code> if the end of the file was reached
+		 */
+		private boolean fill() throws IOException {
+			if(buffer.hasRemaining()) return true;
+			if(position >= size) return false;
+
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mappingSize, size - position));
+			position += buffer.limit();
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return fill()?(buffer.get() & 0xFF):-1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) return 0;
+			if(!fill()) return -1;
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+}
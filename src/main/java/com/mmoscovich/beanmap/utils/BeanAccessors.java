@@ -0,0 +1,168 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the readable properties of a class.
+ * <p>The properties are introspected only once per class and each getter is kept as a {@link MethodHandle},
+ * so reading a property costs about the same as calling the getter directly.</p>
+ * <p>The registry is stored using a {@link ClassValue}, so it does not prevent the classes (and their classloaders) from being unloaded.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+final class BeanAccessors {
+
+	private static final ClassValue<BeanAccessors> REGISTRY = new ClassValue<BeanAccessors>() {
+		@Override
+		protected BeanAccessors computeValue(Class<?> type) {
+			return new BeanAccessors(type);
+		}
+	};
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private final Map<String, Getter> getters;
+	/** The getters of the bean properties (all except <code>getClass()</code>), in order */
+	private final Getter[] properties;
+
+	private BeanAccessors(Class<?> type) {
+		Map<String, Getter> found = new LinkedHashMap<>();
+
+		BeanInfo info;
+		try {
+			info = Introspector.getBeanInfo(type);
+		} catch (IntrospectionException e) {
+			info = null;
+		}
+
+		if(info != null) {
+			for(PropertyDescriptor descriptor : info.getPropertyDescriptors()) {
+				MethodHandle handle = unreflect(descriptor.getReadMethod());
+				if(handle != null) found.put(descriptor.getName(), new Getter(descriptor.getName(), descriptor.getPropertyType(), handle));
+			}
+		}
+
+		this.getters = Collections.unmodifiableMap(found);
+		this.properties = found.values().stream().filter(getter -> !getter.getName().equals("class")).toArray(Getter[]::new);
+	}
+
+	/**
+	 * Returns the accessors of the specified class.
+	 *
+	 * @param type the bean class
+	 * @return the accessors (introspected the first time the class is used)
+	 */
+	static BeanAccessors of(Class<?> type) {
+		return REGISTRY.get(type);
+	}
+
+	/**
+	 * @param name the property name
+	 * @return the getter of the property, or <code>null</code> if the property does not exist or is not readable.
+	 */
+	Getter getter(String name) {
+		return getters.get(name);
+	}
+
+	/**
+	 * @return the names of all the readable properties.
+	 */
+	Set<String> names() {
+		return getters.keySet();
+	}
+
+	/**
+	 * @return the getters of all the readable properties.
+	 */
+	Iterable<Getter> getters() {
+		return getters.values();
+	}
+
+	/**
+	 * @return the getters of the bean properties, excluding <code>class</code> (the array is shared, so it must not be modified).
+	 */
+	Getter[] properties() {
+		return properties;
+	}
+
+	/**
+	 * Converts a getter method into a handle with the signature <code>(Object)Object</code>.
+	 *
+	 * @param method the getter method
+	 * @return the handle or <code>null</code> if there is no getter or it cannot be accessed.
+	 */
+	private static MethodHandle unreflect(Method method) {
+		if(method == null) return null;
+
+		try {
+			return MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+		} catch (IllegalAccessException e) {
+			// The method is public, but the class isn't (eg. a private nested class). Try to make it accessible.
+		}
+
+		try {
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+		} catch (IllegalAccessException | SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Accessor of a single property.
+	 */
+	static final class Getter {
+		private final String name;
+		private final Class<?> type;
+		private final MethodHandle handle;
+
+		private Getter(String name, Class<?> type, MethodHandle handle) {
+			this.name = name;
+			this.type = type;
+			this.handle = handle;
+		}
+
+		/**
+		 * @return the property name
+		 */
+		String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the declared type of the property
+		 */
+		Class<?> getType() {
+			return type;
+		}
+
+		/**
+		 * Reads the property from the bean.
+		 *
+		 * @param bean the bean (must be an instance of the introspected class)
+		 * @return the property value
+		 * @throws RuntimeException if the getter throws an exception (checked exceptions are wrapped).
+		 */
+		Object get(Object bean) {
+			try {
+				return (Object)handle.invokeExact(bean);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("The getter of the property '" + name + "' threw an exception", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Read-only Map backed by a bean (see {@link MapUtils#asMap(Object)}).
+ * <p>The entries are the readable properties of the bean (except <code>class</code>), read with the getters introspected once per class.
+ * The values are read when they are accessed, so the view always shows the current state of the bean. The nested beans
+ * (and the beans inside collections) are wrapped with views when they are read. The rest of the values are returned as they are.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+final class BeanMapView extends AbstractMap<String, Object> {
+
+	private final Object bean;
+	private final BeanAccessors accessors;
+	private final BeanAccessors.Getter[] getters;
+
+	BeanMapView(Object bean) {
+		this.bean = bean;
+		this.accessors = BeanAccessors.of(bean.getClass());
+		this.getters = accessors.properties();
+	}
+
+	/**
+	 * Wraps the value if it is a bean or a collection.
+	 */
+	static Object wrap(Object value) {
+		if(value == null || value instanceof Map) return value;
+		if(value instanceof Collection) return new CollectionView((Collection<?>)value);
+		return MapUtils.isComplex(value)?new BeanMapView(value):value;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if(!(key instanceof String) || key.equals("class")) return null;
+
+		BeanAccessors.Getter getter = accessors.getter((String)key);
+		return (getter != null)?wrap(getter.get(bean)):null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return (key instanceof String) && !key.equals("class") && accessors.getter((String)key) != null;
+	}
+
+	@Override
+	public int size() {
+		return getters.length;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new Iterator<Entry<String, Object>>() {
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < getters.length;
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						if(next >= getters.length) throw new NoSuchElementException();
+						return new PropertyEntry(getters[next++]);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return getters.length;
+			}
+		};
+	}
+
+	/**
+	 * Entry whose value is read when it is accessed (so iterating the keys does not call the getters).
+	 */
+	private class PropertyEntry implements Entry<String, Object> {
+		private final BeanAccessors.Getter getter;
+
+		PropertyEntry(BeanAccessors.Getter getter) {
+			this.getter = getter;
+		}
+
+		@Override
+		public String getKey() {
+			return getter.getName();
+		}
+
+		@Override
+		public Object getValue() {
+			return wrap(getter.get(bean));
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			throw new UnsupportedOperationException("The map is read-only");
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Entry)) return false;
+			Entry<?, ?> other = (Entry<?, ?>)o;
+			return getKey().equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	/**
+	 * Read-only List view of a collection that wraps the elements when they are accessed.
+	 */
+	private static class CollectionView extends AbstractList<Object> implements RandomAccess {
+		private final List<?> items;
+
+		CollectionView(Collection<?> items) {
+			// Only the collections without index are copied (the references, not the elements)
+			this.items = (items instanceof List && items instanceof RandomAccess)?(List<?>)items:new ArrayList<>(items);
+		}
+
+		@Override
+		public Object get(int index) {
+			return wrap(items.get(index));
+		}
+
+		@Override
+		public int size() {
+			return items.size();
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pre-parsed version of a String template (see {@link StringTemplate#replace(String, Object)}), so it can be rendered any number of times without parsing it again.
+ * <p>The template is split once into literal parts and property paths (including the optional marker and the default value).
+ * Rendering only looks up the values and appends them, so the result is built with a single buffer.</p>
+ * <p>The syntax is the same as {@link StringTemplate}: the tokens are wrapped with <code>${...}</code> and a token can be escaped
+ * with an extra <code>$</code> (eg. <code>$${name}</code> is rendered as <code>${name}</code>). A <code>${</code> without closing brace is kept as is.
+ * The values are inserted as they are (they are not processed as templates).</p>
+ * <p>Instances are immutable and thread-safe.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public final class CompiledStringTemplate {
+
+	private static final String PREFIX = "${";
+	private static final char SUFFIX = '}';
+	private static final char ESCAPE = '$';
+
+	private final String template;
+	/** The literal parts. There is one more than paths: the literal before each path and the one after the last path */
+	private final String[] literals;
+	private final PropertyPath[] paths;
+	/** Approximate length of the result, used to size the buffer */
+	private final int expectedLength;
+
+	private CompiledStringTemplate(String template, String[] literals, PropertyPath[] paths) {
+		this.template = template;
+		this.literals = literals;
+		this.paths = paths;
+
+		int length = 0;
+		for(String literal : literals) length += literal.length();
+		this.expectedLength = length + (paths.length * 16);
+	}
+
+	/**
+	 * Parses the String template.
+	 *
+	 * @param template the template (eg. <code>"Hello ${person.title?Mr.} ${person.name}"</code>)
+	 * @return the compiled template
+	 * @throws IllegalArgumentException if the template is <code>null</code> or a token is empty or invalid.
+	 */
+	public static CompiledStringTemplate compile(String template) throws IllegalArgumentException {
+		if(template == null) throw new IllegalArgumentException("The template cannot be null");
+
+		List<String> literals = new ArrayList<>();
+		List<PropertyPath> paths = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+
+		int pos = 0;
+		while(pos < template.length()) {
+			int start = template.indexOf(PREFIX, pos);
+			if(start < 0) break;
+
+			if(start > 0 && template.charAt(start - 1) == ESCAPE) {
+				// Escaped token: remove the escape char and keep the prefix as literal
+				literal.append(template, pos, start - 1).append(PREFIX);
+				pos = start + PREFIX.length();
+				continue;
+			}
+
+			int end = template.indexOf(SUFFIX, start + PREFIX.length());
+			if(end < 0) break;
+
+			String key = template.substring(start + PREFIX.length(), end);
+			if(key.isEmpty()) throw new IllegalArgumentException("The templates contain an empty key");
+
+			literal.append(template, pos, start);
+			literals.add(literal.toString());
+			literal.setLength(0);
+			paths.add(PropertyPath.parse(key));
+
+			pos = end + 1;
+		}
+		literal.append(template, pos, template.length());
+		literals.add(literal.toString());
+
+		return new CompiledStringTemplate(template, literals.toArray(new String[literals.size()]), paths.toArray(new PropertyPath[paths.size()]));
+	}
+
+	/** Strategy of the public methods for the attributes not found: the default value of an optional path, or an exception */
+	private static final Function<PropertyPath, Object> STRICT = path -> {
+		if(path.isOptional()) return path.getDefaultValue();
+		throw new MissingAttributeException(path.toString());
+	};
+
+	/**
+	 * Creates a String from a data source (bean or map) using this template.
+	 *
+	 * @param source a bean or map with the data
+	 * @return the processed String
+	 * @throws MissingAttributeException if an attribute cannot be found on the source and it is not optional
+	 */
+	public String render(Object source) throws MissingAttributeException {
+		return renderWith(source, STRICT);
+	}
+
+	/**
+	 * Appends the String created from a data source (bean or map) using this template.
+	 *
+	 * @param source a bean or map with the data
+	 * @param output where the result is appended
+	 * @throws MissingAttributeException if an attribute cannot be found on the source and it is not optional
+	 */
+	public void render(Object source, StringBuilder output) throws MissingAttributeException {
+		append(source, output, STRICT);
+	}
+
+	/**
+	 * Appends the String created from a data source (bean or map) using this template.
+	 *
+	 * @param source a bean or map with the data
+	 * @param output where the result is appended (eg. a Writer)
+	 * @throws IOException if the output cannot be written
+	 * @throws MissingAttributeException if an attribute cannot be found on the source and it is not optional
+	 */
+	public void renderTo(Object source, Appendable output) throws IOException, MissingAttributeException {
+		appendTo(source, output, STRICT);
+	}
+
+	/**
+	 * Creates a String from a data source, resolving the attributes that are not found with the specified function.
+	 *
+	 * @param source a bean or map with the data
+	 * @param missing receives the paths of the attributes that are not found (including the optional ones) and returns the value to use (or throws an exception)
+	 * @return the processed String
+	 */
+	String renderWith(Object source, Function<PropertyPath, Object> missing) {
+		if(paths.length == 0) return literals[0];
+
+		StringBuilder output = new StringBuilder(expectedLength);
+		append(source, output, missing);
+		return output.toString();
+	}
+
+	/**
+	 * Same as {@link #appendTo(Object, Appendable, Function)}, for a buffer that cannot fail.
+	 */
+	private void append(Object source, StringBuilder output, Function<PropertyPath, Object> missing) {
+		try {
+			appendTo(source, output, missing);
+		} catch(IOException e) {
+			// A StringBuilder does not throw it
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Appends the literals and the values of the paths to the output.
+	 *
+	 * @param source a bean or map with the data
+	 * @param output where the result is appended
+	 * @param missing receives the paths of the attributes that are not found (including the optional ones) and returns the value to use (or throws an exception)
+	 * @throws IOException if the output cannot be written
+	 */
+	private void appendTo(Object source, Appendable output, Function<PropertyPath, Object> missing) throws IOException {
+		output.append(literals[0]);
+		for(int i = 0; i < paths.length; i++) {
+			Object value = EnhancedObjectNavigator.find(source, paths[i]);
+			if(value == null) value = missing.apply(paths[i]);
+			if(value != null) output.append(value.toString());
+			output.append(literals[i + 1]);
+		}
+	}
+
+	/**
+	 * Property paths of the tokens, in order. They are not copied, so they must not be modified.
+	 */
+	PropertyPath[] paths() {
+		return paths;
+	}
+
+	/**
+	 * @return the original template String
+	 */
+	@Override
+	public String toString() {
+		return template;
+	}
+}
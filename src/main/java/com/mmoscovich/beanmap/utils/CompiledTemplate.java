@@ -0,0 +1,1240 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import lombok.AllArgsConstructor;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Immutable, pre-processed version of a transformation template (see {@link ObjectTransformer#compile(Map)}).
+ * <p>All the template rewriting (inclusions, exclusions, nested field names and keywords) is done once when the template is compiled.
+ * Transforming an input only walks the data using the resulting plan, so the same instance can be reused for any number of inputs.</p>
+ * <p>Instances are thread-safe and can be shared (eg. kept in a static field).</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public class CompiledTemplate {
+
+	private static final List<String> KEYWORDS = Arrays.asList("_root", "_include", "_exclude");
+
+	/** Maximum amount of bean classes a level is specialized for. Other classes use the generic nodes */
+	private static final int MAX_SPECIALIZATIONS = 4;
+
+	private final Level root;
+	private final InputShape shape;
+	private final String name;
+	/** If <code>true</code>, the levels are specialized for the bean classes they receive (see {@link #withSpecialization()}) */
+	private final boolean specialized;
+
+	private CompiledTemplate(Level root) {
+		this.root = root;
+		this.shape = new InputShape();
+		this.name = null;
+		this.specialized = false;
+		root.describe(shape.root(), new IdentityHashMap<Object, InputShape.Node>());
+	}
+
+	private CompiledTemplate(CompiledTemplate template, String name, boolean specialized) {
+		this.root = template.root;
+		this.shape = template.shape;
+		this.name = name;
+		this.specialized = specialized;
+	}
+
+	/**
+	 * Returns the same template with a name, used to identify it in the metrics (see {@link TransformListener}).
+	 * <p>The execution plan is shared, so it is not compiled again.</p>
+	 *
+	 * @param name the template name
+	 * @return the named template
+	 */
+	public CompiledTemplate withName(String name) {
+		return new CompiledTemplate(this, name, specialized);
+	}
+
+	/**
+	 * @return the template name, or <code>null</code> if it has none (see {@link #withName(String)}).
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the same template, but specialized for the bean classes it receives.
+	 * <p>The first time a level of the returned template receives an instance of a bean class, its property references are resolved
+	 * against that class (the getter of the first property of each path is looked up once and called directly afterwards; the rest of the path
+	 * is navigated as usual). The specialized version is only used for instances of exactly the same class: Maps, subclasses and levels
+	 * that receive too many different classes use the generic version. The results are the same with or without specialization.</p>
+	 * <p>The execution plan is shared, so it is not compiled again. This template is not affected.</p>
+	 *
+	 * @return the specialized template
+	 */
+	public CompiledTemplate withSpecialization() {
+		return specialized?this:new CompiledTemplate(this, name, true);
+	}
+
+	/**
+	 * @return <code>true</code> if this template is specialized for the bean classes it receives (see {@link #withSpecialization()}).
+	 */
+	public boolean isSpecialized() {
+		return specialized;
+	}
+
+	/**
+	 * Transforms the input object (collection, bean or map) using this template and returns the result,
+	 * which may be a Map or a List (depending on the input).
+	 *
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections).
+	 * @return The result object (Map or List) of applying the template transformation to the input.
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public Object transform(Object input) throws ObjectTransformerException {
+		return evaluate(input, scope(false, null, null));
+	}
+
+	/**
+	 * Transforms the input object using this template, evaluating the items of large collections in parallel.
+	 * <p>The items of a collection with at least <code>threshold</code> elements are split in chunks that are evaluated by the executor
+	 * (the calling thread evaluates the first one). The result has the same order as the input. The collections found inside those items
+	 * are evaluated sequentially, so nested collections do not oversubscribe the executor. Smaller collections are evaluated sequentially.</p>
+	 * <p>If an item fails, the remaining items are not evaluated and the exception of the first failed chunk is thrown (wrapped like in {@link #transform(Object)}).</p>
+	 * <p>The calling thread waits for the chunks, so it should not be a thread of a bounded executor that is also used here.</p>
+	 *
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections).
+	 * @param executor the executor used to evaluate the chunks (eg. a {@link ForkJoinPool}).
+	 * @param threshold minimum size of a collection to evaluate it in parallel.
+	 * @return The result object (Map or List) of applying the template transformation to the input.
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public Object transform(Object input, Executor executor, int threshold) throws ObjectTransformerException {
+		if(executor == null) throw new IllegalArgumentException("The executor cannot be null");
+
+		return evaluate(input, scope(false, new Parallelism(executor, Math.max(threshold, 1)), null));
+	}
+
+	/**
+	 * Transforms the input object using this template, returning a read-only view of the result that is evaluated on demand.
+	 * <p>The result has the same structure and order as {@link #transform(Object)}, but each value (including nested levels
+	 * and String templates) is calculated the first time it is accessed and then kept. The values that are never read are never calculated.</p>
+	 * <p>The input is navigated when the values are read, so it must not be modified while the result is in use.
+	 * The errors (eg. a required field not found on the data source) are thrown as {@link UncheckedTransformerException}
+	 * when the value is accessed. The lazy transformations are not reported to the listener.</p>
+	 *
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections).
+	 * @return a read-only view (Map or List) of the result, or <code>null</code> if the input is <code>null</code>.
+	 * @throws ObjectTransformerException if there is any error while processing the root of the input
+	 */
+	public Object transformLazy(Object input) throws ObjectTransformerException {
+		try {
+			return root.evaluate(input, scope(true, null, null));
+		} catch(RuntimeException e) {
+			throw new ObjectTransformerException(e);
+		}
+	}
+
+	/**
+	 * Transforms the input object using this template without failing when required attributes are missing.
+	 * <p>The missing attributes are written as <code>null</code> (like the optional ones without default value) and their paths
+	 * are returned with the result, so the caller can decide what to do. No exception is created for them.</p>
+	 *
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections).
+	 * @return the result and the paths of the missing attributes
+	 * @throws ObjectTransformerException if there is any other error while processing
+	 */
+	public TransformResult tryTransform(Object input) throws ObjectTransformerException {
+		List<String> missing = new ArrayList<>();
+		Object result = evaluate(input, scope(false, null, new Diagnostics(missing)));
+		return new TransformResult(result, missing);
+	}
+
+	/**
+	 * Evaluates the root level, reporting the metrics if there is a listener.
+	 */
+	private Object evaluate(Object input, Scope scope) throws ObjectTransformerException {
+		TransformListener listener = ObjectTransformer.getTransformListener();
+		long start = (listener != TransformListener.NO_OP)?System.nanoTime():0;
+
+		Object result;
+		try {
+			result = root.evaluate(input, scope);
+		} catch(Exception e) {
+			if(listener != TransformListener.NO_OP) failed(listener, e, System.nanoTime() - start);
+			throw new ObjectTransformerException(e);
+		}
+
+		if(listener != TransformListener.NO_OP) listener.transformCompleted(this, (result instanceof Collection<?>)?((Collection<?>)result).size():1, System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Reports a failed transformation to the listener (the missing attributes were already reported when they were found).
+	 */
+	void failed(TransformListener listener, Throwable error, long nanos) {
+		listener.transformFailed(this, error, nanos);
+	}
+
+	/**
+	 * Creates the outermost scope frame of a transformation with this template.
+	 */
+	private Scope scope(boolean lazy, Parallelism parallelism, Diagnostics diagnostics) {
+		return new Scope(new Mode(this, lazy, parallelism, diagnostics));
+	}
+
+	/**
+	 * Transforms a JSON input while it is being read, writing the result to the generator.
+	 * <p>The parts of the input that are not navigated by the template are never converted into Java objects: they are kept as tokens
+	 * and copied to the output (see {@link InputShape}). If the input is an array and the template has no <code>_root</code>,
+	 * each element is read, transformed and written before reading the next one.</p>
+	 *
+	 * @param parser the parser of the JSON input (not positioned yet or positioned on the first token)
+	 * @param generator the generator where the result is written
+	 * @throws IOException if the input cannot be parsed or the output cannot be written
+	 * @return the amount of records transformed (the amount of elements if the input is an array without <code>_root</code>, 1 otherwise)
+	 * @throws MissingAttributeException if a required field is not found on the input
+	 */
+	long transform(JsonParser parser, JsonGenerator generator) throws IOException {
+		JsonToken token = parser.hasCurrentToken()?parser.getCurrentToken():parser.nextToken();
+		if(token == null) throw new JsonParseException("No content to transform due to end-of-input", parser.getCurrentLocation());
+
+		Scope scope = scope(false, null, null);
+		if(token == JsonToken.START_ARRAY && root.path == null) {
+			long records = 0;
+			generator.writeStartArray();
+			while(parser.nextToken() != JsonToken.END_ARRAY) {
+				root.writeElement(shape.read(parser), scope, generator);
+				records++;
+			}
+			generator.writeEndArray();
+			return records;
+		}
+
+		root.write(shape.read(parser), scope, generator);
+		return 1;
+	}
+
+	/**
+	 * Reads a JSON input as Java objects, skipping the properties that this template does not use (see {@link InputShape#readValue(JsonParser)}).
+	 *
+	 * @param parser the parser, positioned on the first token of the value
+	 * @return the input, to be transformed with this template
+	 * @throws IOException if the input cannot be read or parsed
+	 */
+	Object readInput(JsonParser parser) throws IOException {
+		return shape.readValue(parser);
+	}
+
+	/**
+	 * Transforms the input object, writing the result to the generator while the template is evaluated (no result Maps are created).
+	 *
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections).
+	 * @param generator the generator where the result is written
+	 * @return the amount of records transformed (the size of the input collection, or 1 if the input is a single element)
+	 * @throws IOException if the output cannot be written
+	 * @throws MissingAttributeException if a required field is not found on the input
+	 */
+	long write(Object input, JsonGenerator generator) throws IOException {
+		return root.writeRoot(input, scope(false, null, null), generator);
+	}
+
+	/**
+	 * Transforms a sequence of JSON records while it is being read, writing each result before reading the next record.
+	 * <p>Each record is transformed as a separate input, so the memory used does not depend on the amount of records.</p>
+	 *
+	 * @param parser the parser of the JSON input (not positioned yet)
+	 * @param generator the generator where the results are written
+	 * @param layout the layout of the input and the output
+	 * @throws IOException if the input cannot be parsed or the output cannot be written
+	 * @return the amount of records transformed
+	 * @throws MissingAttributeException if a required field is not found on a record
+	 */
+	long transformRecords(JsonParser parser, JsonGenerator generator, JsonLayout layout) throws IOException {
+		Scope scope = scope(false, null, null);
+		long records = 0;
+		layout.writeStart(generator);
+		while(layout.nextRecord(parser)) {
+			root.write(shape.read(parser), scope, generator);
+			layout.writeRecordEnd(generator);
+			records++;
+		}
+		layout.writeEnd(generator);
+		return records;
+	}
+
+	/**
+	 * Compiles the template map into an execution plan.
+	 * <p>The template is not modified.</p>
+	 *
+	 * @param template the template Map.
+	 * @return the compiled template
+	 * @throws InvalidTemplateException if the template map is invalid (empty, null or with invalid keywords).
+	 */
+	static CompiledTemplate compile(Map<String, Object> template) throws InvalidTemplateException {
+		return compile(template, null);
+	}
+
+	/**
+	 * Compiles the template map into an execution plan, resolving the group names of the schema to their slots.
+	 * <p>The paths evaluated against the datasource (the root input) whose first property is a group read the slot directly
+	 * when the input is a {@link GroupDatasource} built from the same schema. The rest of the paths read the default source directly.
+	 * Any other input is navigated as usual. The String templates resolve the groups by name.</p>
+	 *
+	 * @param template the template Map.
+	 * @param schema the schema of the datasources, or <code>null</code>
+	 * @return the compiled template
+	 * @throws InvalidTemplateException if the template map is invalid (empty, null or with invalid keywords).
+	 */
+	static CompiledTemplate compile(Map<String, Object> template, GroupSchema schema) throws InvalidTemplateException {
+		if(template == null || template.isEmpty()) throw new InvalidTemplateException("The template cannot be null or empty");
+
+		return new CompiledTemplate(new Compiler(schema).compileLevel(template, null, true));
+	}
+
+	/**
+	 * Marks a value that was moved to a nested level because its field name was nested (eg. <code>person.name</code>).
+	 * <p>The value must be evaluated using the input of the level where it was declared (identified by the scope),
+	 * not the input of the nested level.</p>
+	 */
+	@AllArgsConstructor
+	private static class Reference {
+		private final Object scope;
+		private final Object value;
+	}
+
+	/**
+	 * Compile-time state. It keeps track of the levels whose input is referenced by nested levels.
+	 */
+	private static class Compiler {
+
+		private final Set<Object> referencedScopes = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+		/** The schema of the datasources, or <code>null</code> */
+		private final GroupSchema schema;
+		/** The scope of the level whose input is the datasource (the root level without <code>_root</code>) */
+		private Object datasourceScope;
+
+		Compiler(GroupSchema schema) {
+			this.schema = schema;
+		}
+
+		/**
+		 * Compiles one level of the template (and its nested levels recursively).
+		 *
+		 * @param template the template of the level
+		 * @param attributeName the name of the field this level was declared with (<code>null</code> for the root level)
+		 * @param onDatasource <code>true</code> if the path of this level is evaluated against the datasource
+		 * @return the compiled level
+		 */
+		private Level compileLevel(Map<String, Object> template, String attributeName, boolean onDatasource) throws InvalidTemplateException {
+			Object scope = new Object();
+
+			// if the template contains a "_root", use the path to get the new input
+			// if there's an attribute name, use it as path to find the new input
+			// otherwise, use the current input.
+			PropertyPath path = (attributeName == null || attributeName.isEmpty())?null:PropertyPath.literal(attributeName);
+			if(template.containsKey("_root")) {
+				Object root = template.get("_root");
+				if(root == null || root.toString().isEmpty()) throw new InvalidTemplateException("The _root keyword must be a non empty path");
+				path = PropertyPath.literal(root.toString());
+			}
+			if(attributeName == null && path == null) datasourceScope = scope;
+
+			Collection<String> exclusions = buildFieldList(template, "exclude");
+			Collection<String> inclusions = buildFieldList(template, "include");
+
+			// If no inclusions are specified and there are exclusions, all the fields except the ones excluded are added
+			// That depends on the input, so it must be done for each transformed element
+			boolean dynamic = inclusions.contains("_all") || (inclusions.isEmpty() && !exclusions.isEmpty());
+
+			Map<String, Object> level = new LinkedHashMap<>();
+			if(!dynamic) {
+				for(String name : inclusions) {
+					if(!exclusions.contains(name)) level.put(name, "=");
+				}
+			}
+			level.putAll(template);
+
+			processNestedNames(level, scope);
+
+			List<String> keys = new ArrayList<>();
+			List<Node> nodes = new ArrayList<>();
+			for(Entry<String, Object> entry : level.entrySet()) {
+				if(entry.getKey().contains(".") || KEYWORDS.contains(entry.getKey())) continue;
+
+				keys.add(entry.getKey());
+				nodes.add(compileValue(entry.getKey(), entry.getValue(), scope));
+			}
+
+			return new Level(path, (onDatasource && schema != null && path != null)?new GroupPath(schema, path):null,
+					keys.toArray(new String[keys.size()]), nodes.toArray(new Node[nodes.size()]),
+					dynamic?new LinkedHashSet<>(exclusions):null, referencedScopes.contains(scope)?scope:null);
+		}
+
+		/**
+		 * Processes the nested fields (names with ".").
+		 * <p> Creates a new nested field named after the first level. The value will be a Map including the rest of the nested field name.</p>
+		 * <p> The value of the the nested field will be relative to this level's input, <b>NOT</b> to the nested level. The only exception is the keyword '=' which is
+		 * translated to the exact value the field name represents. (If the template is <code>person.name: '='</code>, then the result will be two levels and the value will be the input's <code>person.name</code>)</p>
+		 * <b>Example</b>:
+		 * <code><pre>
+		 * {
+		 *   person.address.street: '='
+		 * }
+		 * </pre></code>
+		 * gets translated to
+		 *  <code><pre>
+		 * {
+		 *    person: {
+		 *       address.street: '='
+		 *    }
+		 * }
+		 * </pre></code>
+		 * When the next level is compiled, the same logic is applied until no nested field names remain. ie: In the end, the template will be
+		 * <code><pre>
+		 * {
+		 *    person: {
+		 *       address: {
+		 *          street: '='
+		 *       }
+		 *    }
+		 * }
+		 * </pre></code>
+		 * <p>The nested maps that already exist in the template are copied before adding the fields, so the original template is never modified.</p>
+		 *
+		 * @param template the (copy of the) level template
+		 * @param scope the identifier of this level, used to evaluate the moved values against this level's input
+		 */
+		@SuppressWarnings("unchecked")
+		private void processNestedNames(Map<String, Object> template, Object scope) {
+			// Get the list of nested field names
+			Collection<String> nestedKeys = template.keySet().stream().filter(k -> k.contains(".")).collect(Collectors.toList());
+
+			// Nested maps already copied at this level
+			Set<Object> copies = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+			for(String key : nestedKeys) {
+				int dot = key.indexOf('.');
+
+				// Get the entry value
+				Object value = template.get(key);
+
+				// Get the first level attribute name: person.address.street -> person
+				String baseKey = key.substring(0, dot);
+
+				// Get the rest of the nested field name: person.address.street -> address.street
+				String subKey = key.substring(dot + 1);
+
+				// If there's already a field with that name (eg. person) in the template and it is a map, add the new property name to a copy of it
+				Object nested = template.get(baseKey);
+				if(nested == null || !(nested instanceof Map)) {
+					// If the field doesnt exist, create a new Map
+					// If the field exists but it isnt a Map, overwrite it with a new Map
+					nested = new LinkedHashMap<String, Object>();
+					copies.add(nested);
+					template.put(baseKey, nested);
+				} else if(!copies.contains(nested)) {
+					nested = new LinkedHashMap<String, Object>((Map<String, Object>)nested);
+					copies.add(nested);
+					template.put(baseKey, nested);
+				}
+
+				// If the value is "=", the source must be the nested property (eg: use person.address.street as source)
+				// Otherwise, the value must be evaluated against this level's input.
+				// If the value is already a reference, it's been processed in a higher level, use that reference.
+				if(!"=".equals(value) && !(value instanceof Reference)) {
+					value = new Reference(scope, value);
+					referencedScopes.add(scope);
+				}
+
+				// Add the value to the new map, using the subKey (address.street)
+				((Map<String,Object>)nested).put(subKey, value);
+			}
+		}
+
+		/**
+		 * Compiles a particular property recursively (all the way down if it is complex).
+		 *
+		 * @param key name of the property
+		 * @param value the template value
+		 * @param scope the scope of the level whose input the value is evaluated against
+		 * @return the node that calculates the property value
+		 */
+		@SuppressWarnings("unchecked")
+		private Node compileValue(String key, Object value, Object scope) throws InvalidTemplateException {
+			if(value instanceof String) {
+				// the value is a String, it will be either a literal or the name of the property to extract from the input
+				String sVal = (String)value;
+
+				if(!sVal.isEmpty() && sVal.charAt(0) == '=') {
+					// the value is a propery name or "=" (meaning the same name)
+					String path = ("=".equals(sVal))? key: sVal.substring(1);
+					try {
+						PropertyPath parsed = PropertyPath.parse(path);
+						if(schema != null && scope == datasourceScope && !parsed.isEntity()) return new GroupPathNode(new GroupPath(schema, parsed));
+						return new PathNode(parsed);
+					} catch(IllegalArgumentException e) {
+						throw new InvalidTemplateException("The field '" + key + "' references an invalid path", e);
+					}
+				} else if(sVal.contains("${")) {
+					try {
+						return new StringTemplateNode(CompiledStringTemplate.compile(sVal.replace("${=}", "${" + key + "}").replace("${=?}", "${" + key + "?}")));
+					} catch(IllegalArgumentException e) {
+						throw new InvalidTemplateException("The field '" + key + "' contains an invalid String template", e);
+					}
+				} else {
+					// the value is a literal, write it as is.
+					return new LiteralNode(sVal);
+				}
+
+			} else if(value instanceof Map) {
+				// the value is a map, ie. a transformation must be apply to the input data
+				return compileLevel((Map<String, Object>)value, key, scope == datasourceScope);
+
+			} else if(value instanceof Reference) {
+				// If the value is a reference, it's the end of a nested field name.
+				Reference ref = (Reference)value;
+				return new ScopedNode(ref.scope, compileValue(key, ref.value, ref.scope));
+
+			} else if(value instanceof List) {
+				// Literal lists are copied, so the plan does not depend on the template map
+				return new LiteralNode(Collections.unmodifiableList(new ArrayList<>((List<?>)value)));
+			}
+
+			return new LiteralNode(value);
+		}
+
+		/**
+		 * Build the list of field names specified in the passed special field
+		 *
+		 * @param template the template where the keywords are
+		 * @param keyword the name of the keyword to find
+		 * @return the list of field names if found. Otherwise an empty list.
+		 */
+		private static List<String> buildFieldList(Map<String,Object> template, String keyword) {
+			Object result = template.get("_" + keyword);
+
+			// If the special field is not found, return an empty list
+			if(result == null) return Collections.emptyList();
+
+			// If the value is a string, return a list with that single item
+			if(!(result instanceof Collection<?>)) result = Arrays.asList(result.toString());
+
+			// Otherwise return the full list
+			return ((Collection<?>)result).stream().map(o -> o.toString()).collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Input of a level that is referenced by values moved to nested levels.
+	 * <p>Every frame also carries the evaluation mode, so the nodes read it from the nearest frame without searching the outer ones.</p>
+	 */
+	@AllArgsConstructor
+	private static class Scope {
+		private final Object id;
+		private final Object input;
+		private final Scope parent;
+		private final Mode mode;
+
+		/**
+		 * Creates the frame of a level, with the same mode as the outer frames.
+		 */
+		Scope(Object id, Object input, Scope parent) {
+			this(id, input, parent, mode(parent));
+		}
+
+		/**
+		 * Creates the outermost frame of a transformation, which only sets the mode.
+		 */
+		Scope(Mode mode) {
+			this(null, null, null, mode);
+		}
+	}
+
+	/**
+	 * How a transformation is evaluated. It is resolved once by the entry point (eg. {@link #transformLazy(Object)}) and carried by the scope frames.
+	 */
+	@AllArgsConstructor
+	private static final class Mode {
+		private static final Mode DEFAULT = new Mode(null, false, null, null);
+
+		/** The template being applied (<code>null</code> in the default mode) */
+		private final CompiledTemplate template;
+		/** If <code>true</code>, the levels return lazy views (see {@link #transformLazy(Object)}) */
+		private final boolean lazy;
+		/** The settings to evaluate the collections in parallel, or <code>null</code> to evaluate them sequentially */
+		private final Parallelism parallelism;
+		/** The collector of the missing attributes, or <code>null</code> if they must fail */
+		private final Diagnostics diagnostics;
+
+		/**
+		 * @return the same mode, but evaluating the collections sequentially
+		 */
+		Mode sequential() {
+			return new Mode(template, lazy, null, diagnostics);
+		}
+	}
+
+	/**
+	 * @return the mode of the transformation (the default one if there are no frames)
+	 */
+	private static Mode mode(Scope scope) {
+		return (scope != null)?scope.mode:Mode.DEFAULT;
+	}
+
+	/**
+	 * Collector of the missing attributes (see {@link #tryTransform(Object)}).
+	 */
+	@AllArgsConstructor
+	private static final class Diagnostics {
+		private final List<String> missing;
+
+		/**
+		 * Handles a required attribute that was not found, reporting it to the listener in all the modes.
+		 *
+		 * @param scope the current scope
+		 * @param path the path of the attribute
+		 * @return the value to use (<code>null</code>) if the missing attributes are being collected
+		 * @throws MissingAttributeException if they are not
+		 */
+		static Object missing(Scope scope, PropertyPath path) {
+			Mode mode = mode(scope);
+			TransformListener listener = ObjectTransformer.getTransformListener();
+			if(listener != TransformListener.NO_OP) listener.missingAttribute(mode.template, path.toString());
+
+			if(mode.diagnostics == null) throw new MissingAttributeException(path.toString());
+
+			mode.diagnostics.missing.add(path.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the value of a path, handling the missing attributes according to the scope (see {@link Diagnostics}).
+	 */
+	private static Object findValue(Object input, PropertyPath path, Scope scope) {
+		return valueOrDefault(EnhancedObjectNavigator.find(input, path), path, scope);
+	}
+
+	/**
+	 * Settings for the parallel evaluation of collections.
+	 * <p>It is part of the {@link Mode} of the transformation. The items evaluated in parallel get a frame with the sequential mode,
+	 * so the collections inside them are evaluated by the same thread.</p>
+	 */
+	private static final class Parallelism {
+		private final Executor executor;
+		private final int threshold;
+		private final int chunks;
+
+		Parallelism(Executor executor, int threshold) {
+			this.executor = executor;
+			this.threshold = threshold;
+
+			// A few chunks per thread, so a slow chunk does not leave the other threads idle
+			int threads = (executor instanceof ForkJoinPool)?((ForkJoinPool)executor).getParallelism():Runtime.getRuntime().availableProcessors();
+			this.chunks = threads * 4;
+		}
+
+		/**
+		 * Evaluates all the items, splitting them in chunks.
+		 *
+		 * @param items the collection items
+		 * @param function the evaluation of a single item
+		 * @return the results, in the same order as the items
+		 */
+		List<Object> map(Collection<?> items, Function<Object, Object> function) {
+			Object[] source = items.toArray();
+			Object[] results = new Object[source.length];
+			AtomicBoolean failed = new AtomicBoolean();
+
+			int chunkSize = Math.max(1, (source.length + chunks - 1) / chunks);
+			List<CompletableFuture<Void>> tasks = new ArrayList<>();
+			Throwable error = null;
+
+			try {
+				for(int start = chunkSize; start < source.length; start += chunkSize) {
+					int from = start;
+					int to = Math.min(start + chunkSize, source.length);
+					tasks.add(CompletableFuture.runAsync(() -> mapRange(source, results, from, to, function, failed), executor));
+				}
+				mapRange(source, results, 0, Math.min(chunkSize, source.length), function, failed);
+			} catch(RuntimeException | Error e) {
+				failed.set(true);
+				error = e;
+			}
+
+			// Wait for all the chunks (even after an error), so no task keeps running after returning
+			for(CompletableFuture<Void> task : tasks) {
+				try {
+					task.join();
+				} catch(CompletionException e) {
+					if(error == null) error = e.getCause();
+				}
+			}
+
+			if(error instanceof RuntimeException) throw (RuntimeException)error;
+			if(error instanceof Error) throw (Error)error;
+
+			return new ArrayList<>(Arrays.asList(results));
+		}
+
+		private static void mapRange(Object[] source, Object[] results, int from, int to, Function<Object, Object> function, AtomicBoolean failed) {
+			try {
+				for(int i = from; i < to && !failed.get(); i++) {
+					results[i] = function.apply(source[i]);
+				}
+			} catch(RuntimeException | Error e) {
+				failed.set(true);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Compiled template value.
+	 */
+	private static abstract class Node {
+
+		/**
+		 * Calculates the value.
+		 *
+		 * @param input the input object of the level that contains this value
+		 * @param scope the inputs of the outer levels that are referenced by nested values (may be <code>null</code>)
+		 * @return the result value
+		 */
+		abstract Object evaluate(Object input, Scope scope);
+
+		/**
+		 * Calculates the value and writes it to the generator.
+		 *
+		 * @param input the input object of the level that contains this value
+		 * @param scope the inputs of the outer levels that are referenced by nested values (may be <code>null</code>)
+		 * @param generator where the value is written
+		 */
+		void write(Object input, Scope scope, JsonGenerator generator) throws IOException {
+			writeValue(evaluate(input, scope), generator);
+		}
+
+		/**
+		 * Registers the parts of the input used by this value.
+		 *
+		 * @param input the input of the level that contains this value
+		 * @param scopes the inputs of the outer levels that are referenced by nested values
+		 */
+		void describe(InputShape.Node input, Map<Object, InputShape.Node> scopes) {
+			// by default, the input is not used
+		}
+
+		/**
+		 * Returns a version of this value for inputs of exactly the specified bean class.
+		 *
+		 * @param type the class of the input of the level that contains this value
+		 * @return the specialized node, or this node if it does not depend on the class
+		 */
+		Node specialize(Class<?> type) {
+			return this;
+		}
+	}
+
+	/**
+	 * Writes a value calculated by a node (common types are written directly, without using the serializers).
+	 */
+	private static void writeValue(Object value, JsonGenerator generator) throws IOException {
+		if(value == null) generator.writeNull();
+		else if(value instanceof String) generator.writeString((String)value);
+		else if(value instanceof Integer) generator.writeNumber((Integer)value);
+		else if(value instanceof Long) generator.writeNumber((Long)value);
+		else if(value instanceof Double) generator.writeNumber((Double)value);
+		else if(value instanceof Boolean) generator.writeBoolean((Boolean)value);
+		else if(value instanceof TokenBuffer) ((TokenBuffer)value).serialize(generator);
+		else generator.writeObject(value);
+	}
+
+	/**
+	 * Value written as is.
+	 */
+	@AllArgsConstructor
+	private static class LiteralNode extends Node {
+		private final Object value;
+
+		@Override
+		Object evaluate(Object input, Scope scope) {
+			return value;
+		}
+	}
+
+	/**
+	 * Value extracted from the input (<code>=path</code>).
+	 */
+	@AllArgsConstructor
+	private static class PathNode extends Node {
+		private final PropertyPath path;
+
+		@Override
+		Object evaluate(Object input, Scope scope) {
+			return findValue(input, path, scope);
+		}
+
+		@Override
+		void describe(InputShape.Node input, Map<Object, InputShape.Node> scopes) {
+			// the value is only copied (the input itself is already navigated, but all its properties are copied)
+			if(path.isEntity()) input.navigateAll();
+			else input.descend(path).copy();
+		}
+
+		@Override
+		Node specialize(Class<?> type) {
+			if(path.isEntity()) return this;
+
+			BeanAccessors.Getter getter = BeanAccessors.of(type).getter(path.getSegment(0));
+			return (getter != null)?new GetterNode(path, getter):this;
+		}
+	}
+
+	/**
+	 * Specialized version of a {@link PathNode} whose first property is read with a getter of the input class.
+	 * <p>Only the first property is bound: the rest of the path is navigated with {@link ObjectNavigator}, because the classes of the
+	 * intermediate values are only known when they are read.</p>
+	 */
+	@AllArgsConstructor
+	private static class GetterNode extends Node {
+		private final PropertyPath path;
+		private final BeanAccessors.Getter getter;
+
+		@Override
+		Object evaluate(Object input, Scope scope) {
+			Object value;
+			try {
+				value = getter.get(input);
+			} catch(Exception e) {
+				// same as the generic navigation
+				value = null;
+			}
+			if(path.size() > 1) value = ObjectNavigator.findValue(value, path.segments(), 1);
+
+			return valueOrDefault(value, path, scope);
+		}
+	}
+
+	/**
+	 * Specialized version of a {@link PathNode} evaluated against the datasource, whose first property was resolved with the schema.
+	 */
+	private static class GroupPathNode extends PathNode {
+		private final GroupPath groupPath;
+
+		GroupPathNode(GroupPath groupPath) {
+			super(groupPath.path);
+			this.groupPath = groupPath;
+		}
+
+		@Override
+		Object evaluate(Object input, Scope scope) {
+			return valueOrDefault(groupPath.find(input), groupPath.path, scope);
+		}
+
+		@Override
+		Node specialize(Class<?> type) {
+			// the input is a datasource, not a bean
+			return this;
+		}
+	}
+
+	/**
+	 * Path evaluated against a datasource, with its first property resolved to a slot of the schema
+	 * (or to the default source if it is not a group).
+	 */
+	private static final class GroupPath {
+		private final GroupSchema schema;
+		private final PropertyPath path;
+		private final int slot;
+
+		GroupPath(GroupSchema schema, PropertyPath path) {
+			this.schema = schema;
+			this.path = path;
+			this.slot = schema.indexOf(path.getSegment(0));
+		}
+
+		/**
+		 * Same as {@link ObjectNavigator#findValue(Object, PropertyPath)}, but a datasource of the schema is read without looking up the group name.
+		 */
+		Object find(Object input) {
+			if(!(input instanceof GroupDatasource) || ((GroupDatasource)input).getSchema() != schema) return ObjectNavigator.findValue(input, path);
+
+			GroupDatasource datasource = (GroupDatasource)input;
+			Object value = datasource.get(slot);
+			if(value == null) value = ObjectNavigator.getSimpleFieldValue(datasource.getDefault(), path.getSegment(0));
+			return ObjectNavigator.findValue(value, path.segments(), 1);
+		}
+	}
+
+	/**
+	 * Applies the rules of the missing values: the default value of an optional path, or the missing attribute otherwise.
+	 *
+	 * @param value the value found (may be <code>null</code>)
+	 * @param path the path of the value
+	 * @param scope the scope, used to report the missing attributes and the default values
+	 * @return the value, the default value or the result of {@link Diagnostics#missing(Scope, PropertyPath)}
+	 */
+	private static Object valueOrDefault(Object value, PropertyPath path, Scope scope) {
+		if(value == null) {
+			if(!path.isOptional()) return Diagnostics.missing(scope, path);
+
+			TransformListener listener = ObjectTransformer.getTransformListener();
+			if(listener != TransformListener.NO_OP) listener.optionalDefaultUsed(mode(scope).template, path);
+			return path.getDefaultValue();
+		}
+		return value;
+	}
+
+	/**
+	 * Value built from a String template.
+	 */
+	@AllArgsConstructor
+	private static class StringTemplateNode extends Node {
+		private final CompiledStringTemplate template;
+
+		@Override
+		Object evaluate(Object input, Scope scope) {
+			return template.renderWith(input, path -> valueOrDefault(null, path, scope));
+		}
+
+		@Override
+		void describe(InputShape.Node input, Map<Object, InputShape.Node> scopes) {
+			// the token values are converted to String
+			for(PropertyPath path : template.paths()) {
+				if(path.isEntity()) input.decode();
+				else input.descend(path).decode();
+			}
+		}
+	}
+
+	/**
+	 * Value that must be evaluated using the input of an outer level.
+	 */
+	@AllArgsConstructor
+	private static class ScopedNode extends Node {
+		private final Object scopeId;
+		private final Node value;
+
+		@Override
+		Object evaluate(Object input, Scope scope) {
+			Scope current = scope;
+			while(current.id != scopeId) current = current.parent;
+
+			return value.evaluate(current.input, scope);
+		}
+
+		@Override
+		void write(Object input, Scope scope, JsonGenerator generator) throws IOException {
+			Scope current = scope;
+			while(current.id != scopeId) current = current.parent;
+
+			value.write(current.input, scope, generator);
+		}
+
+		@Override
+		void describe(InputShape.Node input, Map<Object, InputShape.Node> scopes) {
+			value.describe(scopes.get(scopeId), scopes);
+		}
+	}
+
+	/**
+	 * A template level (the root template or a nested map).
+	 */
+	private static class Level extends Node {
+		/** Path from the outer input to this level's input (<code>_root</code> or the name of the field this level was declared with) */
+		private final PropertyPath path;
+		/** The path resolved with the schema, if the outer input is the datasource (may be <code>null</code>) */
+		private final GroupPath groupPath;
+		private final String[] keys;
+		/** The keys, pre-encoded for the JSON generators */
+		private final SerializedString[] names;
+		private final Node[] nodes;
+		/** If not <code>null</code>, all the input properties except these are added to the output (<code>_all</code> or <code>_exclude</code>) */
+		private final Set<String> exclusions;
+		/** If not <code>null</code>, the input must be kept in the scope because nested values reference it */
+		private final Object scopeId;
+		/** Amount of bean classes this level was specialized for */
+		private final AtomicInteger specializedClasses = new AtomicInteger();
+		/**
+		 * The nodes specialized for each bean class this level received (see {@link CompiledTemplate#withSpecialization()}).
+		 * They are stored using a {@link ClassValue}, so the templates (which may be cached) do not prevent the classes from being unloaded.
+		 */
+		private final ClassValue<Node[]> specializations = new ClassValue<Node[]>() {
+			@Override
+			protected Node[] computeValue(Class<?> type) {
+				if(specializedClasses.incrementAndGet() > MAX_SPECIALIZATIONS) return nodes;
+
+				Node[] specialized = new Node[nodes.length];
+				for(int i = 0; i < nodes.length; i++) specialized[i] = nodes[i].specialize(type);
+				return specialized;
+			}
+		};
+
+		Level(PropertyPath path, GroupPath groupPath, String[] keys, Node[] nodes, Set<String> exclusions, Object scopeId) {
+			this.path = path;
+			this.groupPath = groupPath;
+			this.keys = keys;
+			this.nodes = nodes;
+			this.exclusions = exclusions;
+			this.scopeId = scopeId;
+
+			this.names = new SerializedString[keys.length];
+			for(int i = 0; i < keys.length; i++) names[i] = new SerializedString(keys[i]);
+		}
+
+		@Override
+		void describe(InputShape.Node input, Map<Object, InputShape.Node> scopes) {
+			InputShape.Node levelInput = (path != null)?input.descend(path):input;
+			if(exclusions != null) levelInput.navigateAll();
+			else levelInput.navigate();
+
+			if(scopeId != null) scopes.put(scopeId, levelInput);
+			for(Node node : nodes) node.describe(levelInput, scopes);
+		}
+
+		@Override
+		void write(Object input, Scope scope, JsonGenerator generator) throws IOException {
+			writeRoot(input, scope, generator);
+		}
+
+		/**
+		 * @return the input of this level, navigated from the outer input
+		 */
+		private Object input(Object input) {
+			if(path == null) return JsonNodes.unwrap(input);
+			return (groupPath != null)?groupPath.find(input):ObjectNavigator.findValue(input, path);
+		}
+
+		/**
+		 * Writes the value of this level.
+		 *
+		 * @return the amount of elements written (the size of the collection, or 1 if the input is a single element)
+		 */
+		long writeRoot(Object input, Scope scope, JsonGenerator generator) throws IOException {
+			input = input(input);
+
+			if(input == null) {
+				generator.writeNull();
+				return 1;
+			} else if(input instanceof Collection<?>) {
+				generator.writeStartArray();
+				for(Object item : (Collection<?>)input) {
+					writeElement(item, scope, generator);
+				}
+				generator.writeEndArray();
+				return ((Collection<?>)input).size();
+			} else {
+				writeElement(input, scope, generator);
+				return 1;
+			}
+		}
+
+		/**
+		 * Writes all the properties of this level for a single element, as a JSON object.
+		 *
+		 * @param source the input element
+		 * @param scope the referenced inputs of the outer levels
+		 * @param generator where the object is written
+		 */
+		private void writeElement(Object source, Scope scope, JsonGenerator generator) throws IOException {
+			if(scopeId != null) scope = new Scope(scopeId, source, scope);
+
+			generator.writeStartObject();
+			if(exclusions != null) {
+				Set<String> properties = ObjectNavigator.getProperties(source);
+				for(String name : properties) {
+					if(exclusions.contains(name)) continue;
+
+					generator.writeFieldName(name);
+					int index = indexOf(name);
+					if(index < 0) writeValue(findValue(source, PropertyPath.property(name), scope), generator);
+					else nodes[index].write(source, scope, generator);
+				}
+				for(int i = 0; i < keys.length; i++) {
+					if(properties.contains(keys[i]) && !exclusions.contains(keys[i])) continue;
+
+					generator.writeFieldName(names[i]);
+					nodes[i].write(source, scope, generator);
+				}
+			} else {
+				Node[] nodes = nodesFor(source, scope);
+				for(int i = 0; i < keys.length; i++) {
+					generator.writeFieldName(names[i]);
+					nodes[i].write(source, scope, generator);
+				}
+			}
+			generator.writeEndObject();
+		}
+
+		@Override
+		Object evaluate(Object input, Scope scope) {
+			input = input(input);
+
+			// if the source is null, there's no data to extract
+			if(input == null) return null;
+
+			Mode mode = mode(scope);
+			if(mode.lazy) {
+				if(!(input instanceof Collection<?>)) return lazyEntries(input, scope);
+				return LazyResults.list((Collection<?>)input, item -> lazyEntries(item, scope));
+			}
+
+			if(input instanceof Collection<?>) {
+				// if the source is a collection, the template should be applied to each item
+				// and the transformed list must be returned
+				Collection<?> items = (Collection<?>)input;
+
+				Parallelism parallelism = mode.parallelism;
+				if(parallelism != null && items.size() >= parallelism.threshold) {
+					Scope sequential = new Scope(null, null, scope, mode.sequential());
+					return parallelism.map(items, item -> evaluateEntries(item, sequential));
+				}
+
+				List<Object> result = new ArrayList<>(items.size());
+				for(Object item : items) {
+					result.add(evaluateEntries(item, scope));
+				}
+				return result;
+			} else {
+				// if the source is not a collection, apply the template to the element and return the single result.
+				return evaluateEntries(input, scope);
+			}
+		}
+
+		/**
+		 * Process all the properties of this level for a single element.
+		 *
+		 * @param source the input element
+		 * @param scope the referenced inputs of the outer levels
+		 * @return The result Map for this element
+		 */
+		private Map<String, Object> evaluateEntries(Object source, Scope scope) {
+			if(scopeId != null) scope = new Scope(scopeId, source, scope);
+
+			if(exclusions != null) return evaluateDynamicEntries(source, scope);
+
+			Node[] nodes = nodesFor(source, scope);
+			Map<String, Object> result = new LinkedHashMap<>(capacity(keys.length));
+			for(int i = 0; i < keys.length; i++) {
+				result.put(keys[i], nodes[i].evaluate(source, scope));
+			}
+			return result;
+		}
+
+		/**
+		 * Creates the lazy view of all the properties of this level for a single element.
+		 * The keys are resolved now (they are needed by most Map operations) and the values when they are accessed.
+		 *
+		 * @param source the input element
+		 * @param scope the referenced inputs of the outer levels
+		 * @return The view of the result Map for this element
+		 */
+		private Map<String, Object> lazyEntries(Object source, Scope scope) {
+			Scope elementScope = (scopeId != null)?new Scope(scopeId, source, scope):scope;
+
+			if(exclusions == null) {
+				Node[] nodes = nodesFor(source, elementScope);
+				return LazyResults.map(keys, i -> nodes[i].evaluate(source, elementScope));
+			}
+
+			// Same keys and order as evaluateDynamicEntries: the properties (not excluded) and then the rest of the keys
+			Set<String> properties = ObjectNavigator.getProperties(source);
+			List<String> names = new ArrayList<>(keys.length + properties.size());
+			List<Integer> indexes = new ArrayList<>(keys.length + properties.size());
+			for(String name : properties) {
+				if(exclusions.contains(name)) continue;
+
+				names.add(name);
+				indexes.add(indexOf(name));
+			}
+			for(int i = 0; i < keys.length; i++) {
+				if(properties.contains(keys[i]) && !exclusions.contains(keys[i])) continue;
+
+				names.add(keys[i]);
+				indexes.add(i);
+			}
+
+			String[] resultKeys = names.toArray(new String[names.size()]);
+			return LazyResults.map(resultKeys, i -> {
+				int index = indexes.get(i);
+				return (index < 0)?findValue(source, PropertyPath.property(resultKeys[i]), elementScope):nodes[index].evaluate(source, elementScope);
+			});
+		}
+
+		/**
+		 * Returns the nodes to use for the element: the ones specialized for its class if the template is specialized
+		 * and the element is a bean, or the generic ones otherwise.
+		 *
+		 * @param source the input element
+		 * @param scope the current scope (it carries the mode of the transformation)
+		 * @return the nodes, in the same order as the keys
+		 */
+		private Node[] nodesFor(Object source, Scope scope) {
+			CompiledTemplate template = mode(scope).template;
+			if(template == null || !template.specialized || source == null || source instanceof Map || source instanceof GroupDatasource || source instanceof JsonNode) return nodes;
+
+			return specializations.get(source.getClass());
+		}
+
+		/**
+		 * Process all the properties of this level for a single element, including all the element's properties
+		 * (except the excluded ones) before the ones declared in the template.
+		 *
+		 * @param source the input element
+		 * @param scope the referenced inputs of the outer levels
+		 * @return The result Map for this element
+		 */
+		private Map<String, Object> evaluateDynamicEntries(Object source, Scope scope) {
+			Set<String> properties = ObjectNavigator.getProperties(source);
+			Map<String, Object> result = new LinkedHashMap<>(capacity(keys.length + properties.size()));
+
+			for(String name : properties) {
+				if(exclusions.contains(name)) continue;
+
+				int index = indexOf(name);
+				result.put(name, (index < 0)?findValue(source, PropertyPath.property(name), scope):nodes[index].evaluate(source, scope));
+			}
+			for(int i = 0; i < keys.length; i++) {
+				if(!result.containsKey(keys[i])) result.put(keys[i], nodes[i].evaluate(source, scope));
+			}
+			return result;
+		}
+
+		private int indexOf(String key) {
+			for(int i = 0; i < keys.length; i++) {
+				if(keys[i].equals(key)) return i;
+			}
+			return -1;
+		}
+
+		private static int capacity(int size) {
+			return (size * 4 / 3) + 1;
+		}
+	}
+}
@@ -18,25 +18,48 @@ public class EnhancedObjectNavigator  {
 	 * @throws IllegalArgumentException if the path is <code>null</code> or empty.
 	 * @throws MissingAttributeException if the attribute is not found and is not marked as optional.
 	 */
-	@SuppressWarnings("unchecked")
 	public static <T> T findValue(Object source, String path) throws IllegalArgumentException, MissingAttributeException {
 		if(path == null || path.isEmpty()) throw new IllegalArgumentException("The path cannot be empty");
-    	
-		// Optional logic
-		boolean isOptional = path.contains("?");
-		String[] parts = path.split("\\?");
 		
-		if(source != null && (parts[0].equals("ENTITY") || parts[0].equals("="))) {
+		return findValue(source, PropertyPath.parse(path));
+	}
+	
+	/**
+	 * Find the specified attribute in the source, using a path that has already been parsed (see {@link PropertyPath#parse(String)}).
+	 * <p>It has the same features as {@link #findValue(Object, String)}, but the path is not parsed on every call.</p>
+	 * 
+	 * @param src the object to retrieve the data from (POJO or Map)
+	 * @param path the parsed path to the property
+	 * @return the value of the property. If the attribute is not found and it's optional, then the default value is returned (or <code>null</code> if there is no default value). 
+	 * @throws IllegalArgumentException if the path is <code>null</code>.
+	 * @throws MissingAttributeException if the attribute is not found and is not marked as optional.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T findValue(Object source, PropertyPath path) throws IllegalArgumentException, MissingAttributeException {
+		if(path == null) throw new IllegalArgumentException("The path cannot be null");
+		
+		Object value = find(source, path);
+		if(value == null) {
+			if(!path.isOptional()) throw new MissingAttributeException(path.toString());
+			return (T)path.getDefaultValue();
+		}
+		return (T)value;
+	}
+	
+	/**
+	 * Finds the value of the path without applying the optional marker, so the callers can apply their own rules to the values not found.
+	 * 
+	 * @param source the object to retrieve the data from
+	 * @param path the parsed path to the property (not <code>null</code>)
+	 * @return the value (the source for the <code>ENTITY</code> path), or <code>null</code> if it is not found
+	 */
+	static Object find(Object source, PropertyPath path) {
+		if(source != null && path.isEntity()) {
 			if(source instanceof GroupDatasource) source = ((GroupDatasource)source).getDefault();
 
-			return (T)source;
+			return source;
 		}
-					
-		Object value = ObjectNavigator.findValue(source, parts[0]);
-    	if(value == null) {
-    		if(!isOptional) throw new MissingAttributeException(path);
-    		return (T)((parts.length > 1)?parts[1]:null);
-    	}
-    	return (T)value;
+
+		return ObjectNavigator.findValue(source, path);
 	}
 }
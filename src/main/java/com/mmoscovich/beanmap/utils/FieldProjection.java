@@ -0,0 +1,276 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Compiled list of field names used to select part of a JSON document (see {@link JsonTransformer#selectFields(FieldProjection, String)}).
+ * <p>The field names (simple or nested, eg. <code>person</code> or <code>person.name</code>) are compiled into a tree of paths.
+ * The selected values are copied token by token from the input to the output and the rest of the input is skipped without
+ * being converted into Java objects.</p>
+ * <p>The result is the same as applying a template that only contains <code>_include</code> with the field names: the simple fields are written
+ * in the order of the list, followed by the nested ones, and if a key is repeated on the input, its last value is used. The field names that need the features
+ * of the general transformer (<code>_all</code>, optional markers, <code>ENTITY</code>) are processed with it.</p>
+ * <p>Instances are immutable and thread-safe.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public final class FieldProjection {
+
+	private final Level root;
+	/** Template used when the field names cannot be projected directly */
+	private final CompiledTemplate fallback;
+
+	private FieldProjection(Level root, CompiledTemplate fallback) {
+		this.root = root;
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Compiles the list of field names.
+	 *
+	 * @param fieldNames the list of field names (can be nested)
+	 * @return the compiled projection
+	 * @throws InvalidTemplateException if the field names are not valid
+	 */
+	public static FieldProjection compile(Collection<String> fieldNames) throws InvalidTemplateException {
+		if(fieldNames == null) fieldNames = Collections.emptyList();
+
+		boolean projectable = !fieldNames.isEmpty();
+		for(String name : fieldNames) {
+			if(!isProjectable(name)) projectable = false;
+		}
+
+		if(!projectable) {
+			Map<String, Object> inclusionTemplate = new HashMap<>();
+			inclusionTemplate.put("_include", new ArrayList<>(fieldNames));
+			return new FieldProjection(null, ObjectTransformer.compile(inclusionTemplate));
+		}
+
+		LevelBuilder builder = new LevelBuilder();
+		for(String name : fieldNames) {
+			LevelBuilder current = builder;
+			String[] segments = name.split("\\.");
+			for(int i = 0; i < segments.length - 1; i++) {
+				current = current.child(segments[i]);
+			}
+			current.select(segments[segments.length - 1]);
+		}
+		return new FieldProjection(builder.build(), null);
+	}
+
+	/**
+	 * A field name can be projected if it is a plain path (no keywords, optional markers or empty segments).
+	 */
+	private static boolean isProjectable(String name) {
+		if(name == null || name.isEmpty() || name.equals("_all") || name.indexOf('?') >= 0) return false;
+		if(name.startsWith(".") || name.endsWith(".") || name.contains("..")) return false;
+
+		for(String segment : name.split("\\.")) {
+			if(segment.equals("ENTITY") || segment.equals("=")) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the selected fields of the JSON input to the generator.
+	 *
+	 * @param parser the parser of the JSON input (not positioned yet or positioned on the first token)
+	 * @param generator the generator where the result is written
+	 * @throws IOException if the input cannot be parsed or the output cannot be written
+	 * @throws MissingAttributeException if a selected field is not found on the input
+	 */
+	void project(JsonParser parser, JsonGenerator generator) throws IOException {
+		if(fallback != null) {
+			fallback.transform(parser, generator);
+			return;
+		}
+
+		JsonToken token = parser.hasCurrentToken()?parser.getCurrentToken():parser.nextToken();
+		if(token == null) throw new JsonParseException("No content to transform due to end-of-input", parser.getCurrentLocation());
+
+		root.writeValue(parser, generator);
+	}
+
+	/**
+	 * Mutable version of a {@link Level}, used while compiling.
+	 */
+	private static class LevelBuilder {
+		private final Map<String, LevelBuilder> children = new LinkedHashMap<>();
+		private final Set<String> selected = new LinkedHashSet<>();
+
+		LevelBuilder child(String name) {
+			LevelBuilder child = children.get(name);
+			if(child == null) {
+				child = new LevelBuilder();
+				children.put(name, child);
+			}
+			return child;
+		}
+
+		void select(String name) {
+			selected.add(name);
+		}
+
+		/**
+		 * Builds the level with the same order as the <code>_include</code> templates: the simple fields in the order of the list,
+		 * followed by the nested ones. If a field is also nested (eg. person and person.name), the nested field wins.
+		 */
+		Level build() {
+			Set<String> names = new LinkedHashSet<>(selected);
+			names.addAll(children.keySet());
+
+			List<Field> fields = new ArrayList<>();
+			for(String name : names) {
+				LevelBuilder child = children.get(name);
+				fields.add(new Field(name, fields.size(), (child == null)?null:child.build()));
+			}
+			return new Level(fields);
+		}
+	}
+
+	/**
+	 * A selected field.
+	 */
+	private static class Field {
+		private final String name;
+		private final SerializedString serializedName;
+		private final int index;
+		/** If <code>null</code>, the whole value is copied. Otherwise, only the selected nested fields */
+		private final Level nested;
+
+		Field(String name, int index, Level nested) {
+			this.name = name;
+			this.serializedName = new SerializedString(name);
+			this.index = index;
+			this.nested = nested;
+		}
+	}
+
+	/**
+	 * The selected fields of an object.
+	 */
+	private static class Level {
+		private final Field[] fields;
+		private final Map<String, Field> byName = new HashMap<>();
+
+		Level(List<Field> fields) {
+			this.fields = fields.toArray(new Field[fields.size()]);
+			for(Field field : fields) byName.put(field.name, field);
+		}
+
+		/**
+		 * Writes the value at the current token (null, an array of elements or a single element).
+		 */
+		void writeValue(JsonParser parser, JsonGenerator generator) throws IOException {
+			JsonToken token = parser.getCurrentToken();
+
+			if(token == JsonToken.VALUE_NULL) {
+				generator.writeNull();
+			} else if(token == JsonToken.START_ARRAY) {
+				generator.writeStartArray();
+				while(parser.nextToken() != JsonToken.END_ARRAY) {
+					writeElement(parser, generator);
+				}
+				generator.writeEndArray();
+			} else {
+				writeElement(parser, generator);
+			}
+		}
+
+		/**
+		 * Writes the selected fields of the element at the current token.
+		 */
+		private void writeElement(JsonParser parser, JsonGenerator generator) throws IOException {
+			if(parser.getCurrentToken() != JsonToken.START_OBJECT) {
+				// It has no properties, so none of the fields are found
+				parser.skipChildren();
+				checkRequired(new boolean[fields.length]);
+
+				generator.writeStartObject();
+				writeMissing(new boolean[fields.length], generator);
+				return;
+			}
+
+			// The values are buffered, so they are written in the order of the fields and a repeated key keeps the last value (like the Maps bound by Jackson)
+			TokenBuffer[] values = new TokenBuffer[fields.length];
+			boolean[] found = new boolean[fields.length];
+
+			while(parser.nextToken() == JsonToken.FIELD_NAME) {
+				Field field = byName.get(parser.getCurrentName());
+				parser.nextToken();
+
+				if(field == null) {
+					// not selected: skip it without reading it
+					parser.skipChildren();
+					continue;
+				}
+				found[field.index] = true;
+
+				TokenBuffer value = new TokenBuffer(parser);
+				value.copyCurrentStructure(parser);
+				values[field.index] = value;
+			}
+
+			checkRequired(found);
+
+			generator.writeStartObject();
+			for(Field field : fields) {
+				generator.writeFieldName(field.serializedName);
+				if(!found[field.index]) {
+					// only the nested fields can be missing
+					generator.writeNull();
+					continue;
+				}
+
+				JsonParser value = values[field.index].asParser(parser.getCodec());
+				value.nextToken();
+				if(field.nested == null) {
+					if(value.getCurrentToken() == JsonToken.VALUE_NULL) throw new MissingAttributeException(field.name);
+					generator.copyCurrentStructure(value);
+				} else {
+					field.nested.writeValue(value, generator);
+				}
+			}
+			generator.writeEndObject();
+		}
+
+		/**
+		 * @throws MissingAttributeException if a selected (not nested) field was not found
+		 */
+		private void checkRequired(boolean[] found) {
+			for(Field field : fields) {
+				if(!found[field.index] && field.nested == null) throw new MissingAttributeException(field.name);
+			}
+		}
+
+		/**
+		 * Writes the nested fields that were not found as <code>null</code> and closes the object.
+		 */
+		private void writeMissing(boolean[] found, JsonGenerator generator) throws IOException {
+			for(Field field : fields) {
+				if(found[field.index]) continue;
+
+				generator.writeFieldName(field.serializedName);
+				generator.writeNull();
+			}
+			generator.writeEndObject();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.mmoscovich.beanmap.utils;
+
+/**
+ * Interfaces of the reactive streams used by {@link TemplateProcessor}.
+ * <p>They have the same methods and contract as <code>java.util.concurrent.Flow</code> (added in Java 9), which is not available
+ * in Java 8, so the processor can be adapted to that API (or to any Reactive Streams library) by delegating each method.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public final class Flow {
+
+	private Flow() {}
+
+	/**
+	 * Producer of items that are received by the subscribers.
+	 *
+	 * @param <T> the type of the items
+	 */
+	@FunctionalInterface
+	public interface Publisher<T> {
+		/**
+		 * Adds a subscriber, which receives {@link Subscriber#onSubscribe(Subscription)} (or {@link Subscriber#onError(Throwable)} if it cannot be added).
+		 *
+		 * @param subscriber the subscriber
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * Receiver of the items of a publisher. The methods are called in order, never concurrently.
+	 *
+	 * @param <T> the type of the items
+	 */
+	public interface Subscriber<T> {
+		/**
+		 * Called before any other method. No items are received until they are requested with the subscription.
+		 *
+		 * @param subscription the subscription
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called with the next item (only when it was requested).
+		 *
+		 * @param item the item
+		 */
+		void onNext(T item);
+
+		/**
+		 * Called when the publisher fails. No other methods are called after it.
+		 *
+		 * @param throwable the error
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * Called when there are no more items. No other methods are called after it.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * Link between a publisher and a subscriber, used to request items (backpressure) and to cancel.
+	 */
+	public interface Subscription {
+		/**
+		 * Requests more items. The requests are added (a total of <code>Long.MAX_VALUE</code> means unbounded).
+		 *
+		 * @param n the amount of items, which must be positive
+		 */
+		void request(long n);
+
+		/**
+		 * Stops receiving items (some items may still be received if they were already being sent).
+		 */
+		void cancel();
+	}
+
+	/**
+	 * Subscriber that is also a publisher, usually of the transformed items.
+	 *
+	 * @param <T> the type of the received items
+	 * @param <R> the type of the published items
+	 */
+	public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {}
+}
@@ -1,20 +1,48 @@
 package com.mmoscovich.beanmap.utils;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import lombok.ToString;
 
+/**
+ * Input made of several named sources (groups) and a default source.
+ * <p>A name is resolved to the source of the group with that name, or to the property of the default source if there is no such group.</p>
+ * <p>The datasources created with the constructor are mutable (see {@link #add(String, Object)}) and they must not be shared between threads.
+ * The ones built from a {@link GroupSchema} (see {@link GroupSchema#datasource(Object)}) are immutable: their groups are fixed
+ * by the schema and the sources are kept in slots, which the templates compiled with that schema read directly.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
 @ToString
 public class GroupDatasource {
 	private final Object defaultSource;
-	private final Map<String, Object> sources = new HashMap<String, Object>();
+	private final Map<String, Object> sources;
+	private final GroupSchema schema;
+	private final Object[] slots;
 
 	public GroupDatasource(Object defaultDS) {
-		this.defaultSource = defaultDS;
+		this(defaultDS, new HashMap<String, Object>(), null, null);
 	}
 	
+	private GroupDatasource(Object defaultSource, Map<String, Object> sources, GroupSchema schema, Object[] slots) {
+		this.defaultSource = defaultSource;
+		this.sources = sources;
+		this.schema = schema;
+		this.slots = slots;
+	}
+	
+	/**
+	 * Adds (or replaces) a group.
+	 * 
+	 * @param groupName the group name
+	 * @param source the source of the group
+	 * @throws UnsupportedOperationException if the datasource was built from a schema.
+	 */
 	public void add(String groupName, Object source) {
+		if(schema != null) throw new UnsupportedOperationException("The datasources built from a schema are immutable");
 		sources.put(groupName, source);
 	}
 	
@@ -22,11 +50,64 @@ public class GroupDatasource {
 		return this.defaultSource;
 	}
 	
+	/**
+	 * @return the schema this datasource was built from, or <code>null</code> if it is mutable.
+	 */
+	public GroupSchema getSchema() {
+		return schema;
+	}
+	
 	public Object get(String key) {
-		Object source = sources.get(key);
+		Object source = (schema != null)?get(schema.indexOf(key)):sources.get(key);
 		if(source != null) return source;
 		
 		return ObjectNavigator.getSimpleFieldValue(this.defaultSource, key);
 	}
 	
+	/**
+	 * @param slot the slot of the group in the schema (or <code>-1</code>)
+	 * @return the source of the group, or <code>null</code> if it was not set
+	 */
+	Object get(int slot) {
+		return (slot >= 0)?slots[slot]:null;
+	}
+	
+	/**
+	 * Builder of the immutable datasources (see {@link GroupSchema#datasource(Object)}).
+	 * <p>The builder can be reused: each built datasource has a copy of the sources set until then.</p>
+	 */
+	public static class Builder {
+		private final GroupSchema schema;
+		private final Object defaultSource;
+		private final Object[] slots;
+		
+		Builder(GroupSchema schema, Object defaultSource) {
+			this.schema = schema;
+			this.defaultSource = defaultSource;
+			this.slots = new Object[schema.size()];
+		}
+		
+		/**
+		 * Sets the source of a group.
+		 * 
+		 * @param groupName the group name
+		 * @param source the source of the group
+		 * @return this builder
+		 * @throws IllegalArgumentException if the schema has no such group.
+		 */
+		public Builder set(String groupName, Object source) {
+			int slot = schema.indexOf(groupName);
+			if(slot < 0) throw new IllegalArgumentException("The group '" + groupName + "' is not part of the " + schema);
+			
+			slots[slot] = source;
+			return this;
+		}
+		
+		/**
+		 * @return the immutable datasource
+		 */
+		public GroupDatasource build() {
+			return new GroupDatasource(defaultSource, null, schema, Arrays.copyOf(slots, slots.length));
+		}
+	}
 }
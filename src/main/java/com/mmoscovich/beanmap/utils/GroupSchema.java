@@ -0,0 +1,81 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed, ordered set of group names of the immutable {@link GroupDatasource}s.
+ * <p>Each group has a slot (its position), so the datasources keep their sources in an array. The templates compiled with the schema
+ * (see {@link ObjectTransformer#compile(Map, GroupSchema)}) resolve the group names to slots once, so reading a group is an array access.</p>
+ * <p>Instances are immutable and thread-safe, so a schema is usually kept in a static field and shared by all the datasources.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public final class GroupSchema {
+
+	private final String[] groups;
+	private final Map<String, Integer> slots;
+
+	private GroupSchema(String[] groups) {
+		this.groups = groups;
+		this.slots = new HashMap<>(groups.length * 2);
+		for(int i = 0; i < groups.length; i++) {
+			if(groups[i] == null || groups[i].isEmpty()) throw new IllegalArgumentException("The group names cannot be null or empty");
+			if(groups[i].indexOf('.') >= 0) throw new IllegalArgumentException("The group name '" + groups[i] + "' cannot contain dots");
+			if(slots.put(groups[i], i) != null) throw new IllegalArgumentException("The group '" + groups[i] + "' is repeated");
+		}
+	}
+
+	/**
+	 * Creates a schema.
+	 *
+	 * @param groups the group names (not repeated, without dots)
+	 * @return the schema
+	 * @throws IllegalArgumentException if a name is empty, repeated or contains dots.
+	 */
+	public static GroupSchema of(String... groups) {
+		return new GroupSchema(groups.clone());
+	}
+
+	/**
+	 * Starts building an immutable datasource with this schema.
+	 *
+	 * @param defaultSource the source used for the names that are not groups
+	 * @return the builder
+	 */
+	public GroupDatasource.Builder datasource(Object defaultSource) {
+		return new GroupDatasource.Builder(this, defaultSource);
+	}
+
+	/**
+	 * @param group the group name
+	 * @return the slot of the group, or <code>-1</code> if it is not part of this schema
+	 */
+	public int indexOf(String group) {
+		Integer slot = slots.get(group);
+		return (slot != null)?slot:-1;
+	}
+
+	/**
+	 * @return the group names, in slot order
+	 */
+	public List<String> getGroups() {
+		return Collections.unmodifiableList(Arrays.asList(groups));
+	}
+
+	/**
+	 * @return the amount of groups
+	 */
+	public int size() {
+		return groups.length;
+	}
+
+	@Override
+	public String toString() {
+		return "GroupSchema" + Arrays.toString(groups);
+	}
+}
@@ -0,0 +1,201 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Describes which parts of the input a {@link CompiledTemplate} navigates, so a JSON input can be read without decoding the rest.
+ * <p>Objects and arrays the template navigates (level inputs, intermediate path segments, String template tokens) are decoded
+ * as Maps and Lists. The other ones are only copied to the output, so they are kept as raw token buffers that are written back without
+ * being converted into Java objects.</p>
+ * <p>The properties of a navigated object that the template does not reference are skipped while parsing (they are not added to the Maps),
+ * unless the template needs all the properties of the value (<code>_all</code>, <code>_exclude</code> or an <code>ENTITY</code> reference).</p>
+ * <p>The shape is built when the template is compiled and is not modified afterwards.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+final class InputShape {
+
+	private final Node root = new Node();
+
+	/**
+	 * @return the node that represents the whole input
+	 */
+	Node root() {
+		return root;
+	}
+
+	/**
+	 * Reads the value at the current token of the parser.
+	 * <p>When it returns, the parser is positioned on the last token of the value.</p>
+	 *
+	 * @param parser the parser, positioned on the first token of the value
+	 * @return the value, where the parts that are not navigated by the template are kept as {@link TokenBuffer}s.
+	 * @throws IOException if the input cannot be read or parsed
+	 */
+	Object read(JsonParser parser) throws IOException {
+		return read(parser, root, true, true);
+	}
+
+	/**
+	 * Reads the value at the current token of the parser as plain Java objects (Maps, Lists and scalars), skipping the properties
+	 * that are not referenced by the template.
+	 * <p>When it returns, the parser is positioned on the last token of the value.</p>
+	 *
+	 * @param parser the parser, positioned on the first token of the value
+	 * @return the value, without the properties that are not used by the template.
+	 * @throws IOException if the input cannot be read or parsed
+	 */
+	Object readValue(JsonParser parser) throws IOException {
+		return read(parser, root, true, false);
+	}
+
+	/**
+	 * @param node the node of the value, or <code>null</code> if it is only copied
+	 * @param prune if the properties that are not referenced can be skipped
+	 * @param buffer if the values that are only copied are kept as tokens (otherwise, they are converted into Java objects)
+	 */
+	private static Object read(JsonParser parser, Node node, boolean prune, boolean buffer) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+
+		if(token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+			if(node == null || !node.navigated) {
+				if(!buffer) return parser.readValueAs(Object.class);
+
+				// not navigated, just copied: keep the tokens
+				TokenBuffer tokens = new TokenBuffer(parser);
+				tokens.copyCurrentStructure(parser);
+				return tokens;
+			}
+
+			// needed as plain java objects, use the default (untyped) deserialization
+			if(node.decoded) return parser.readValueAs(Object.class);
+
+			prune = prune && !node.complete;
+
+			if(token == JsonToken.START_ARRAY) {
+				// Arrays are transparent: the elements have the same shape
+				List<Object> list = new ArrayList<>();
+				while(parser.nextToken() != JsonToken.END_ARRAY) {
+					list.add(read(parser, node, prune, buffer));
+				}
+				return list;
+			}
+
+			Map<String, Object> map = new LinkedHashMap<>();
+			while(parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				Node child = node.children.get(name);
+				parser.nextToken();
+
+				if(child == null && prune) {
+					// not referenced by the template
+					parser.skipChildren();
+					continue;
+				}
+				map.put(name, read(parser, child, prune, buffer));
+			}
+			return map;
+		}
+
+		return readScalar(parser, token);
+	}
+
+	/**
+	 * Reads a scalar value, using the same types as the untyped deserialization.
+	 */
+	private static Object readScalar(JsonParser parser, JsonToken token) throws IOException {
+		switch(token) {
+			case VALUE_STRING: return parser.getText();
+			case VALUE_NUMBER_INT: return parser.getNumberValue();
+			case VALUE_NUMBER_FLOAT: return parser.getDoubleValue();
+			case VALUE_TRUE: return Boolean.TRUE;
+			case VALUE_FALSE: return Boolean.FALSE;
+			case VALUE_NULL: return null;
+			default: return parser.readValueAs(Object.class);
+		}
+	}
+
+	/**
+	 * A property of the input (or the whole input, for the root).
+	 */
+	static final class Node {
+		private final Map<String, Node> children = new HashMap<>();
+		/** The value is used as Map or List (ie. its properties are accessed) */
+		private boolean navigated;
+		/** The value must be completely converted into Java objects */
+		private boolean decoded;
+		/** All the properties of the value are used (so none of them, nor their nested properties, can be skipped) */
+		private boolean complete;
+
+		/**
+		 * Marks this value as navigated and returns the node of one of its properties.
+		 *
+		 * @param name the property name
+		 * @return the property node
+		 */
+		Node child(String name) {
+			navigated = true;
+
+			Node child = children.get(name);
+			if(child == null) {
+				child = new Node();
+				children.put(name, child);
+			}
+			return child;
+		}
+
+		/**
+		 * Marks all the intermediate properties of the path as navigated and returns the node of the last one.
+		 *
+		 * @param path the path, relative to this value
+		 * @return the node of the last property
+		 */
+		Node descend(PropertyPath path) {
+			Node node = this;
+			for(int i = 0; i < path.size(); i++) {
+				node = node.child(path.getSegment(i));
+			}
+			return node;
+		}
+
+		/**
+		 * Marks this value as navigated (eg. it is the input of a template level).
+		 */
+		void navigate() {
+			navigated = true;
+		}
+
+		/**
+		 * Marks this value as navigated and needed with all its properties (eg. it is the input of a level with <code>_all</code>).
+		 */
+		void navigateAll() {
+			navigated = true;
+			complete = true;
+		}
+
+		/**
+		 * Marks this value as copied to the output, so all its properties are needed if it is also navigated.
+		 */
+		void copy() {
+			complete = true;
+		}
+
+		/**
+		 * Marks this value as needed as plain Java objects (eg. it is converted to String).
+		 */
+		void decode() {
+			navigated = true;
+			decoded = true;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Layout of a JSON input or output that contains a sequence of records (see {@link JsonTransformer#transformRecords(CompiledTemplate, java.io.Reader, JsonLayout)}).
+ * 
+ * @author Martin Moscovich
+ *
+ */
+public enum JsonLayout {
+	/** A single JSON array, where each element is a record */
+	ARRAY,
+	/** Newline-delimited JSON, where each line contains a record (empty lines are ignored) */
+	NDJSON;
+	
+	/**
+	 * Moves the parser to the first token of the next record.
+	 * <p>The parser must be positioned on the last token of the previous record (or not positioned yet, for the first one).</p>
+	 * 
+	 * @param parser the parser of the input
+	 * @return <code>true</code> if there is another record, <code>false</code> if the end of the input (or of the array) was reached.
+	 * @throws IOException if the input cannot be read or it does not have this layout
+	 */
+	boolean nextRecord(JsonParser parser) throws IOException {
+		if(this == NDJSON) return parser.nextToken() != null;
+		
+		if(!parser.hasCurrentToken()) {
+			JsonToken token = parser.nextToken();
+			if(token == null) throw new JsonParseException("No content to transform due to end-of-input", parser.getCurrentLocation());
+			if(token != JsonToken.START_ARRAY) throw new JsonParseException("The input is not a JSON array", parser.getCurrentLocation());
+		} else if(parser.getCurrentToken() == JsonToken.END_ARRAY && parser.getParsingContext().inRoot()) {
+			// the array was already finished
+			return false;
+		}
+		return parser.nextToken() != JsonToken.END_ARRAY;
+	}
+	
+	/**
+	 * Writes what goes before the first record.
+	 */
+	void writeStart(JsonGenerator generator) throws IOException {
+		if(this == ARRAY) {
+			generator.writeStartArray();
+		} else {
+			// Each record is followed by a line break, so there is no need for a separator
+			generator.setRootValueSeparator(null);
+		}
+	}
+	
+	/**
+	 * Writes what goes after each record.
+	 */
+	void writeRecordEnd(JsonGenerator generator) throws IOException {
+		if(this == NDJSON) generator.writeRaw('\n');
+	}
+	
+	/**
+	 * Writes what goes after the last record.
+	 */
+	void writeEnd(JsonGenerator generator) throws IOException {
+		if(this == ARRAY) generator.writeEndArray();
+	}
+}
@@ -0,0 +1,110 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+/**
+ * Adapts the Jackson tree model ({@link JsonNode}) to the navigation of the objects.
+ * <p>The trees are never converted: the object nodes are navigated directly, the array nodes are seen as read-only Lists
+ * (so they are detected as collections) and the scalar nodes are unwrapped into their values (String, Number, Boolean)
+ * only when they are reached.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+final class JsonNodes {
+
+	private JsonNodes() {}
+
+	/**
+	 * Converts a node into the value used by the navigation.
+	 *
+	 * @param node the node (may be <code>null</code>)
+	 * @return the same object node, a List view of an array node, the value of a scalar node or <code>null</code> for null and missing nodes.
+	 */
+	static Object unwrap(JsonNode node) {
+		if(node == null) return null;
+
+		switch(node.getNodeType()) {
+			case OBJECT: return node;
+			case ARRAY: return new ArrayView((ArrayNode)node);
+			case STRING: return node.textValue();
+			case NUMBER: return node.numberValue();
+			case BOOLEAN: return node.booleanValue();
+			case POJO: return ((POJONode)node).getPojo();
+			case BINARY:
+				try {
+					return node.binaryValue();
+				} catch (IOException e) {
+					return null;
+				}
+			default: return null;
+		}
+	}
+
+	/**
+	 * Converts the value if it is a node (see {@link #unwrap(JsonNode)}).
+	 *
+	 * @param value any value
+	 * @return the unwrapped node or the same value if it is not a node
+	 */
+	static Object unwrap(Object value) {
+		return (value instanceof JsonNode)?unwrap((JsonNode)value):value;
+	}
+
+	/**
+	 * Retrieves the value of a field of the node.
+	 *
+	 * @param node the node
+	 * @param fieldName the name of the field
+	 * @return the unwrapped value, or <code>null</code> if the node is not an object or it has no such field
+	 */
+	static Object get(JsonNode node, String fieldName) {
+		return node.isObject()?unwrap(node.get(fieldName)):null;
+	}
+
+	/**
+	 * @param node the node
+	 * @return the names of the fields of the node (in order), or an empty Set if it is not an object
+	 */
+	static Set<String> fieldNames(JsonNode node) {
+		if(!node.isObject()) return Collections.emptySet();
+
+		Set<String> names = new LinkedHashSet<>();
+		for(Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+			names.add(it.next());
+		}
+		return names;
+	}
+
+	/**
+	 * Read-only List view of an array node. The elements are unwrapped when they are accessed.
+	 */
+	private static class ArrayView extends AbstractList<Object> implements RandomAccess {
+		private final ArrayNode array;
+
+		ArrayView(ArrayNode array) {
+			this.array = array;
+		}
+
+		@Override
+		public Object get(int index) {
+			if(index < 0 || index >= array.size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + array.size());
+			return unwrap(array.get(index));
+		}
+
+		@Override
+		public int size() {
+			return array.size();
+		}
+	}
+}
@@ -1,11 +1,31 @@
 package com.mmoscovich.beanmap.utils;
 
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -20,9 +40,12 @@ public class JsonTransformer extends ObjectTransformer {
 	
 	private static ObjectMapper mapper = new ObjectMapper();
 	
+	private static volatile TemplateCache templateCache;
+	
 	/**
 	 * Creates an JSON string output containing only the specified fields from the JSON string input.
-	 * <p>Simple and nested attributes can be used (eg. "person" or "person.name")</p>
+	 * <p>Simple and nested attributes can be used (eg. "person" or "person.name").
+	 * The simple fields are written in the order of the list, followed by the nested ones (like {@link ObjectTransformer#selectFields(Object, List)}).</p>
 	 * 
 	 * @param fieldNames the list of field names (can be nested)
 	 * @param json the payload to use as input. It must be a parseable (aka valid) JSON String. 
@@ -30,22 +53,90 @@ public class JsonTransformer extends ObjectTransformer {
 	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
 	 */
 	public static String selectFields(String json, List<String> fieldNames) throws ObjectTransformerException {
-		Object result;
+		return selectFields(FieldProjection.compile(fieldNames), json);
+	}
+	
+	/**
+	 * Creates an JSON string output containing only the fields of the compiled projection from the JSON string input.
+	 * <p>The selected values are copied while the input is parsed and the rest of the input is skipped (see {@link FieldProjection}).</p>
+	 * 
+	 * @param projection the compiled field names (see {@link FieldProjection#compile(java.util.Collection)})
+	 * @param json the payload to use as input. It must be a parseable (aka valid) JSON String. 
+	 * @return The result JSON String containing only the selected fields.
+	 * @throws InvalidInputException if the input String cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static String selectFields(FieldProjection projection, String json) throws InvalidInputException, ObjectTransformerException {
+		if(json == null) throw new InvalidInputException("The input could not be parsed", new IllegalArgumentException("The input cannot be null"));
+		
+		StringWriter output = new StringWriter();
 		try {
-			result = selectFields(mapper.readValue(json, Object.class), fieldNames);
+			stream(null, streaming(projection), mapper.getFactory().createParser(json), generator(output));
 		} catch (IOException e) {
-			throw new InvalidInputException("The input could not be parsed", e);
+			throw new ObjectTransformerException("There was an internal problem while creating the JSON String", e);
 		}
-		
+		return output.toString();
+	}
+	
+	/**
+	 * Copies the fields of the compiled projection from the JSON input to the output while the input is being read.
+	 * <p>The streams are not closed. If an error occurs, part of the result may have already been written.</p>
+	 * 
+	 * @param projection the compiled field names (see {@link FieldProjection#compile(java.util.Collection)})
+	 * @param json the payload to use as input. It must contain a valid JSON. 
+	 * @param output where the result JSON is written.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void selectFields(FieldProjection projection, Reader json, Writer output) throws InvalidInputException, ObjectTransformerException {
 		try {
-			return mapper.writeValueAsString(result);
-		} catch (JsonProcessingException e) {
-			throw new ObjectTransformerException("There was an internal problem while creating the JSON String", e);
+			stream(null, streaming(projection), mapper.getFactory().createParser(json), generator(output));
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		}
+	}
+	
+	/**
+	 * Copies the fields of the compiled projection from the JSON input to the output (UTF-8) while the input is being read.
+	 * <p>See {@link #selectFields(FieldProjection, Reader, Writer)}.</p>
+	 * 
+	 * @param projection the compiled field names (see {@link FieldProjection#compile(java.util.Collection)})
+	 * @param json the payload to use as input. It must contain a valid JSON (the encoding is detected automatically). 
+	 * @param output where the result JSON is written.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void selectFields(FieldProjection projection, InputStream json, OutputStream output) throws InvalidInputException, ObjectTransformerException {
+		try {
+			stream(null, streaming(projection), mapper.getFactory().createParser(json), generator(output));
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		}
+	}
+	
+	/**
+	 * Copies the fields of the compiled projection from the input to the output while the input is being read, reading and writing
+	 * any of the formats supported by Jackson (see {@link #transform(CompiledTemplate, InputStream, JsonFactory, OutputStream, JsonFactory)}).
+	 * 
+	 * @param projection the compiled field names (see {@link FieldProjection#compile(java.util.Collection)})
+	 * @param input the payload to use as input. It must contain a valid value of the input format. 
+	 * @param inputFormat the factory of the input format, or <code>null</code> for JSON.
+	 * @param output where the result is written.
+	 * @param outputFormat the factory of the output format, or <code>null</code> for JSON.
+	 * @throws InvalidInputException if the input cannot be parsed.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void selectFields(FieldProjection projection, InputStream input, JsonFactory inputFormat, OutputStream output, JsonFactory outputFormat) throws InvalidInputException, ObjectTransformerException {
+		try {
+			stream(null, streaming(projection), parser(input, format(inputFormat)), generator(output, format(outputFormat)));
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
 		}
 	}
 	
 	/**
 	 * Transforms the JSON String input using the given template and returns the result as a JSON String
+	 * <p>The input is transformed while it is parsed (see {@link #transform(CompiledTemplate, Reader, Writer)}).</p>
 	 * 
 	 * @param template JSON Template used to apply the transformation
 	 * @param json the payload to use as input. It must be a parseable (aka valid) JSON String. 
@@ -55,10 +146,333 @@ public class JsonTransformer extends ObjectTransformer {
 	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
 	 */
 	public static String transform(String template, String json) throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		return transform(compile(template), json);
+	}
+	
+	/**
+	 * Transforms the JSON input using the given template, writing the result as JSON while the input is being read.
+	 * <p>See {@link #transform(CompiledTemplate, Reader, Writer)}.</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation
+	 * @param json the payload to use as input. It must contain a valid JSON. 
+	 * @param output where the result JSON is written.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(String template, Reader json, Writer output) throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		transform(compile(template), json, output);
+	}
+	
+	/**
+	 * Transforms the JSON input using the given template, writing the result as JSON (UTF-8) while the input is being read.
+	 * <p>See {@link #transform(CompiledTemplate, Reader, Writer)}.</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation
+	 * @param json the payload to use as input. It must contain a valid JSON (the encoding is detected automatically). 
+	 * @param output where the result JSON is written.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(String template, InputStream json, OutputStream output) throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		transform(compile(template), json, output);
+	}
+	
+	/**
+	 * Transforms the JSON input using the given compiled template, writing the result as JSON while the input is being read.
+	 * <p>The input is never fully converted into Java objects: only the objects and arrays that the template navigates
+	 * are converted. The values copied unchanged (eg. <code>"="</code> references) are passed through as tokens.
+	 * If the input is an array and the template has no <code>_root</code>, each element is transformed and written before reading the next one.</p>
+	 * <p>The streams are not closed. If an error occurs, part of the result may have already been written.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param json the payload to use as input. It must contain a valid JSON. 
+	 * @param output where the result JSON is written.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, Reader json, Writer output) throws InvalidInputException, ObjectTransformerException {
 		try {
-			return transform(template, mapper.readValue(json, Object.class));
+			stream(template, template::transform, mapper.getFactory().createParser(json), generator(output));
 		} catch (IOException e) {
-			throw new InvalidInputException("The input could not be parsed", e);
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms the JSON input using the given compiled template, writing the result as JSON (UTF-8) while the input is being read.
+	 * <p>See {@link #transform(CompiledTemplate, Reader, Writer)}.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param json the payload to use as input. It must contain a valid JSON (the encoding is detected automatically). 
+	 * @param output where the result JSON is written.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, InputStream json, OutputStream output) throws InvalidInputException, ObjectTransformerException {
+		try {
+			stream(template, template::transform, mapper.getFactory().createParser(json), generator(output));
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms the input using the given compiled template while it is being read, like {@link #transform(CompiledTemplate, InputStream, OutputStream)},
+	 * but reading and writing any of the formats supported by Jackson.
+	 * <p>The formats are specified with their factories (eg. <code>SmileFactory</code> or <code>CBORFactory</code> of the Jackson dataformat modules),
+	 * so a binary input can be transformed into a binary output without any text encoding. The input and output formats can be different.
+	 * The internal ObjectMapper is used as codec if the factories have none.</p>
+	 * <p>The streams are not closed. If an error occurs, part of the result may have already been written.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param input the payload to use as input. It must contain a valid value of the input format. 
+	 * @param inputFormat the factory of the input format, or <code>null</code> for JSON.
+	 * @param output where the result is written.
+	 * @param outputFormat the factory of the output format, or <code>null</code> for JSON.
+	 * @throws InvalidInputException if the input cannot be parsed.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, InputStream input, JsonFactory inputFormat, OutputStream output, JsonFactory outputFormat) throws InvalidInputException, ObjectTransformerException {
+		try {
+			stream(template, template::transform, parser(input, format(inputFormat)), generator(output, format(outputFormat)));
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms a sequence of JSON records (a JSON array or newline-delimited JSON), writing the results with the same layout.
+	 * <p>See {@link #transform(CompiledTemplate, Reader, Writer, JsonLayout)}.</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation
+	 * @param json the records to use as input.
+	 * @param output where the results are written.
+	 * @param layout the layout of the input and the output.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON or it does not have the specified layout.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(String template, Reader json, Writer output, JsonLayout layout) throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		transform(compile(template), json, output, layout);
+	}
+	
+	/**
+	 * Transforms a sequence of JSON records (a JSON array or newline-delimited JSON), writing the results (UTF-8) with the same layout.
+	 * <p>See {@link #transform(CompiledTemplate, Reader, Writer, JsonLayout)}.</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation
+	 * @param json the records to use as input (the encoding is detected automatically).
+	 * @param output where the results are written.
+	 * @param layout the layout of the input and the output.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON or it does not have the specified layout.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(String template, InputStream json, OutputStream output, JsonLayout layout) throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		transform(compile(template), json, output, layout);
+	}
+	
+	/**
+	 * Transforms a sequence of JSON records (a JSON array or newline-delimited JSON), writing the results with the same layout.
+	 * <p>Each record is read, transformed as a separate input and written before reading the next one,
+	 * so the memory used does not depend on the amount of records.</p>
+	 * <p>The streams are not closed. If an error occurs, the results of the previous records have already been written.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param json the records to use as input.
+	 * @param output where the results are written.
+	 * @param layout the layout of the input and the output.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON or it does not have the specified layout.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, Reader json, Writer output, JsonLayout layout) throws InvalidInputException, ObjectTransformerException {
+		try {
+			stream(template, (parser, generator) -> template.transformRecords(parser, generator, layout), mapper.getFactory().createParser(json), generator(output));
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms a sequence of JSON records (a JSON array or newline-delimited JSON), writing the results (UTF-8) with the same layout.
+	 * <p>See {@link #transform(CompiledTemplate, Reader, Writer, JsonLayout)}.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param json the records to use as input (the encoding is detected automatically).
+	 * @param output where the results are written.
+	 * @param layout the layout of the input and the output.
+	 * @throws InvalidInputException if the input cannot be parsed as JSON or it does not have the specified layout.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, InputStream json, OutputStream output, JsonLayout layout) throws InvalidInputException, ObjectTransformerException {
+		transformRecords(template, json, output, layout);
+	}
+	
+	/**
+	 * Same as {@link #transform(CompiledTemplate, InputStream, OutputStream, JsonLayout)}, but returns the amount of records (used by {@link BatchTransformer}).
+	 */
+	static long transformRecords(CompiledTemplate template, InputStream json, OutputStream output, JsonLayout layout) throws InvalidInputException, ObjectTransformerException {
+		try {
+			return stream(template, (parser, generator) -> template.transformRecords(parser, generator, layout), mapper.getFactory().createParser(json), generator(output));
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		}
+	}
+	
+	/**
+	 * Returns a lazy stream with the result of transforming each record of the input (a JSON array or newline-delimited JSON).
+	 * <p>A record is only read when the stream needs its result, so the memory used does not depend on the amount of records.
+	 * Each result is a Map or a List, like {@link #transformToObject(String, String)}.</p>
+	 * <p>The stream must be closed after it is used (eg. using try-with-resources) to release the parser, but the reader is not closed.
+	 * The errors found while consuming the stream are thrown as {@link UncheckedTransformerException}.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param json the records to use as input.
+	 * @param layout the layout of the input.
+	 * @return the lazy stream of results, in the same order as the records.
+	 * @throws ObjectTransformerException if the input cannot be read.
+	 */
+	public static Stream<Object> transformRecords(CompiledTemplate template, Reader json, JsonLayout layout) throws ObjectTransformerException {
+		try {
+			return records(template, mapper.getFactory().createParser(json), layout);
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input", e);
+		}
+	}
+	
+	/**
+	 * Returns a lazy stream with the result of transforming each record of the input (a JSON array or newline-delimited JSON).
+	 * <p>See {@link #transformRecords(CompiledTemplate, Reader, JsonLayout)}.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param json the records to use as input (the encoding is detected automatically).
+	 * @param layout the layout of the input.
+	 * @return the lazy stream of results, in the same order as the records.
+	 * @throws ObjectTransformerException if the input cannot be read.
+	 */
+	public static Stream<Object> transformRecords(CompiledTemplate template, InputStream json, JsonLayout layout) throws ObjectTransformerException {
+		try {
+			return records(template, mapper.getFactory().createParser(json), layout);
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while reading the input", e);
+		}
+	}
+	
+	/**
+	 * Transforms many JSON documents with the same template, writing the results as a single JSON array or as newline-delimited JSON.
+	 * <p>See {@link #transformAll(CompiledTemplate, Iterable, Writer, JsonLayout)}.</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation
+	 * @param jsons the documents to use as input. Each one must be a parseable (aka valid) JSON String.
+	 * @param output where the results are written.
+	 * @param layout the layout of the output.
+	 * @return the amount of documents transformed
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 * @throws InvalidInputException if a document cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static long transformAll(String template, Iterable<String> jsons, Writer output, JsonLayout layout) throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		return transformAll(compile(template), jsons, output, layout);
+	}
+	
+	/**
+	 * Transforms many JSON documents with the same template, writing the results as a single JSON array or as newline-delimited JSON.
+	 * <p>It is the same as calling {@link #transform(CompiledTemplate, String)} for each document and joining the results,
+	 * but all the results are written by a single generator (so its buffers are reused) and each document is transformed while it is parsed.</p>
+	 * <p>The writer is not closed. If an error occurs, the results of the previous documents have already been written.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param jsons the documents to use as input. Each one must be a parseable (aka valid) JSON String.
+	 * @param output where the results are written.
+	 * @param layout the layout of the output.
+	 * @return the amount of documents transformed
+	 * @throws InvalidInputException if a document cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static long transformAll(CompiledTemplate template, Iterable<String> jsons, Writer output, JsonLayout layout) throws InvalidInputException, ObjectTransformerException {
+		try {
+			return all(template, jsons, layout, generator(output), (json, generator) -> {
+				try (JsonParser parser = mapper.getFactory().createParser(json)) {
+					template.transform(parser, generator);
+					return inputSize(parser);
+				}
+			});
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms many JSON documents (encoded as bytes) with the same template, writing the results (UTF-8) as a single JSON array or as newline-delimited JSON.
+	 * <p>See {@link #transformAll(CompiledTemplate, Iterable, Writer, JsonLayout)}. The documents are parsed directly from the arrays (they are not decoded into Strings).</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param jsons the documents to use as input (the encoding is detected automatically).
+	 * @param output where the results are written.
+	 * @param layout the layout of the output.
+	 * @return the amount of documents transformed
+	 * @throws InvalidInputException if a document cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static long transformAll(CompiledTemplate template, Iterable<byte[]> jsons, OutputStream output, JsonLayout layout) throws InvalidInputException, ObjectTransformerException {
+		try {
+			return all(template, jsons, layout, generator(output), (json, generator) -> {
+				try (JsonParser parser = mapper.getFactory().createParser(json)) {
+					template.transform(parser, generator);
+					return inputSize(parser);
+				}
+			});
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms each element of the collection (beans, maps or collections) as a separate input, writing the results as a single JSON array
+	 * or as newline-delimited JSON.
+	 * <p>See {@link #transformAll(CompiledTemplate, Iterable, Writer, JsonLayout)}. With {@link JsonLayout#ARRAY} the result is the same as
+	 * {@link #transform(CompiledTemplate, Object, Writer)} with the whole collection (except that the elements that are collections
+	 * are also transformed element by element).</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param inputs the inputs.
+	 * @param output where the results are written.
+	 * @param layout the layout of the output.
+	 * @return the amount of inputs transformed
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public static long transformAllObjects(CompiledTemplate template, Collection<?> inputs, Writer output, JsonLayout layout) throws ObjectTransformerException {
+		try {
+			return all(template, inputs, layout, generator(output), (input, generator) -> {
+				template.write(input, generator);
+				return -1;
+			});
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms each element of the collection as a separate input, writing the results (UTF-8) as a single JSON array or as newline-delimited JSON.
+	 * <p>See {@link #transformAllObjects(CompiledTemplate, Collection, Writer, JsonLayout)}.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param inputs the inputs.
+	 * @param output where the results are written.
+	 * @param layout the layout of the output.
+	 * @return the amount of inputs transformed
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public static long transformAllObjects(CompiledTemplate template, Collection<?> inputs, OutputStream output, JsonLayout layout) throws ObjectTransformerException {
+		try {
+			return all(template, inputs, layout, generator(output), (input, generator) -> {
+				template.write(input, generator);
+				return -1;
+			});
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while writing the output", e);
 		}
 	}
 	
@@ -72,16 +486,13 @@ public class JsonTransformer extends ObjectTransformer {
 	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
 	 */
 	public static String transform(String template, Object input) throws InvalidTemplateException, ObjectTransformerException {
-		try {
-			return mapper.writeValueAsString(transformToObject(template, input));
-		} catch (JsonProcessingException e) {
-			throw new ObjectTransformerException("There was an internal problem while creating the JSON String", e);
-		}
+		return transform(compile(template), input);
 	}
 	
 	/**
 	 * Transforms the JSON String input using the given template and returns the result,
 	 * which may be a Map or a List (depending on the input).
+	 * <p>Only the parts of the input referenced by the template are converted into Java objects: the rest are skipped while parsing.</p>
 	 * 
 	 * @param template JSON Template used to apply the transformation.
 	 * @param json the payload to use as input. It must be a parseable (aka valid) JSON String. 
@@ -91,17 +502,53 @@ public class JsonTransformer extends ObjectTransformer {
 	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
 	 */
 	public static Object transformToObject(String template, String json) throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
-		try {
-			return transformToObject(template, mapper.readValue(json, Object.class));
+		if(json == null) throw new InvalidInputException("The input could not be parsed", new IllegalArgumentException("The input cannot be null"));
+		
+		CompiledTemplate compiled = compile(template);
+		
+		TransformListener listener = getTransformListener();
+		long start = (listener != TransformListener.NO_OP)?System.nanoTime():0;
+		
+		Object input;
+		try (JsonParser parser = mapper.getFactory().createParser(json)) {
+			if(parser.nextToken() == null) throw new JsonParseException("No content to map due to end-of-input", parser.getCurrentLocation());
+			input = compiled.readInput(parser);
 		} catch (IOException e) {
 			throw new InvalidInputException("The input could not be parsed", e);
 		}
+		
+		if(listener != TransformListener.NO_OP) listener.inputParsed(compiled, json.length(), System.nanoTime() - start);
+		return compiled.transform(input);
+	}
+	
+	/**
+	 * Transforms the input using the given compiled template and returns the result, which may be a Map or a List (depending on the input).
+	 * <p>The input can use any of the formats supported by Jackson (see {@link #transform(CompiledTemplate, InputStream, JsonFactory, OutputStream, JsonFactory)}).
+	 * Only the parts of the input referenced by the template are converted into Java objects. The stream is not closed.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param input the payload to use as input. It must contain a valid value of the input format. 
+	 * @param inputFormat the factory of the input format, or <code>null</code> for JSON.
+	 * @return The result object (Map or List) of applying the template transformation to the input.
+	 * @throws InvalidInputException if the input cannot be parsed.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static Object transformToObject(CompiledTemplate template, InputStream input, JsonFactory inputFormat) throws InvalidInputException, ObjectTransformerException {
+		Object value;
+		try (JsonParser parser = parser(input, format(inputFormat))) {
+			parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+			if(parser.nextToken() == null) throw new JsonParseException("No content to map due to end-of-input", parser.getCurrentLocation());
+			value = template.readInput(parser);
+		} catch (IOException e) {
+			throw new InvalidInputException("The input could not be parsed", e);
+		}
+		return template.transform(value);
 	}
 	
 	/**
 	 * Transforms the input object (collection, bean or map) using the given template and returns the result,
 	 * which may be a Map or a List (depending on the input).
-	 * <p>The template must be a valid JSON String and it will be parsed.</p>
+	 * <p>The template must be a valid JSON String and it will be parsed (unless it is found in the template cache).</p>
 	 * 
 	 * @param template JSON Template used to apply the transformation.
 	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections).  
@@ -109,18 +556,578 @@ public class JsonTransformer extends ObjectTransformer {
 	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
 	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
 	 */
-	@SuppressWarnings("unchecked")
 	public static Object transformToObject(String template, Object input) throws InvalidTemplateException, ObjectTransformerException {
+		return compile(template).transform(input);
+	}
+	
+	/**
+	 * Transforms the JSON String input using the given compiled template and returns the result as a JSON String
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param json the payload to use as input. It must be a parseable (aka valid) JSON String. 
+	 * @return The result (as a JSON String) of applying the template transformation to the input 
+	 * @throws InvalidInputException if the input String cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static String transform(CompiledTemplate template, String json) throws InvalidInputException, ObjectTransformerException {
+		if(json == null) throw new InvalidInputException("The input could not be parsed", new IllegalArgumentException("The input cannot be null"));
+		
+		StringWriter output = new StringWriter();
+		try {
+			stream(template, template::transform, mapper.getFactory().createParser(json), generator(output));
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was an internal problem while creating the JSON String", e);
+		}
+		return output.toString();
+	}
+	
+	/**
+	 * Transforms the input object (collection, bean or map) using the given compiled template and returns the result as a JSON String
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections). 
+	 * @return The result (as a JSON String) of applying the template transformation to the input 
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public static String transform(CompiledTemplate template, Object input) throws ObjectTransformerException {
+		StringWriter output = new StringWriter();
+		try (JsonGenerator generator = generator(output)) {
+			write(template, input, generator);
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was an internal problem while creating the JSON String", e);
+		}
+		return output.toString();
+	}
+	
+	/**
+	 * Transforms the input object (collection, bean or map) using the given template, writing the result as JSON to the output.
+	 * <p>See {@link #transform(CompiledTemplate, Object, Writer)}.</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections). 
+	 * @param output where the result JSON is written.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(String template, Object input, Writer output) throws InvalidTemplateException, ObjectTransformerException {
+		transform(compile(template), input, output);
+	}
+	
+	/**
+	 * Transforms the input object (collection, bean or map) using the given template, writing the result as JSON (UTF-8) to the output.
+	 * <p>See {@link #transform(CompiledTemplate, Object, Writer)}.</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections). 
+	 * @param output where the result JSON is written.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(String template, Object input, OutputStream output) throws InvalidTemplateException, ObjectTransformerException {
+		transform(compile(template), input, output);
+	}
+	
+	/**
+	 * Transforms the input object (collection, bean or map) using the given compiled template, writing the result as JSON to the output.
+	 * <p>The result is written while the template is evaluated, so no intermediate result Maps or JSON String are created.</p>
+	 * <p>The writer is not closed. If an error occurs, part of the result may have already been written.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections). 
+	 * @param output where the result JSON is written.
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, Object input, Writer output) throws ObjectTransformerException {
+		try (JsonGenerator generator = generator(output)) {
+			write(template, input, generator);
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms the input object (collection, bean or map) using the given compiled template, writing the result as JSON (UTF-8) to the output.
+	 * <p>See {@link #transform(CompiledTemplate, Object, Writer)}.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections). 
+	 * @param output where the result JSON is written.
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, Object input, OutputStream output) throws ObjectTransformerException {
+		try (JsonGenerator generator = generator(output)) {
+			write(template, input, generator);
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms the input object (collection, bean or map) using the given compiled template, writing the result with the specified format.
+	 * <p>See {@link #transform(CompiledTemplate, Object, Writer)} and {@link #transform(CompiledTemplate, InputStream, JsonFactory, OutputStream, JsonFactory)}.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections). 
+	 * @param output where the result is written.
+	 * @param outputFormat the factory of the output format (eg. <code>SmileFactory</code>), or <code>null</code> for JSON.
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, Object input, OutputStream output, JsonFactory outputFormat) throws ObjectTransformerException {
+		try (JsonGenerator generator = generator(output, format(outputFormat))) {
+			write(template, input, generator);
+		} catch (IOException e) {
+			throw new ObjectTransformerException("There was a problem while writing the output", e);
+		}
+	}
+	
+	/**
+	 * Transforms the input object (collection, bean or map) using the given compiled template, writing the result to the generator.
+	 * <p>The result is written as a single value, so it can be part of a larger document (eg. the value of a field written by the caller).
+	 * The generator is neither flushed nor closed.</p>
+	 * <p>The values that are not written directly (eg. beans referenced with <code>"="</code>) are serialized with the codec of the generator.
+	 * If it has none, the internal ObjectMapper is set as its codec.</p>
+	 * 
+	 * @param template the compiled template (see {@link #compile(String)})
+	 * @param input the payload to use as input. It can be any kind of object (beans, maps, collections). 
+	 * @param generator where the result is written.
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	public static void transform(CompiledTemplate template, Object input, JsonGenerator generator) throws ObjectTransformerException {
+		if(generator.getCodec() == null) generator.setCodec(mapper);
+		write(template, input, generator);
+	}
+	
+	/**
+	 * Parses and compiles the JSON template, so it can be reused for several transformations.
+	 * <p>If the template cache is enabled (see {@link #setTemplateCache(TemplateCache)}), the template String is used as key
+	 * and it is only compiled the first time.</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation.
+	 * @return the compiled template.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 */
+	public static CompiledTemplate compile(String template) throws InvalidTemplateException {
+		TemplateCache cache = templateCache;
+		if(cache == null) return parseTemplate(template);
+		
+		return cache.get(template);
+	}
+	
+	/**
+	 * Parses and compiles the JSON template, so it can be reused for several transformations.
+	 * <p>If the template cache is enabled (see {@link #setTemplateCache(TemplateCache)}), the identifier is used as key
+	 * and the template is only compiled the first time. The caller must make sure the same identifier is always used for the same template.</p>
+	 * <p>The identifier is also used as the template name (see {@link CompiledTemplate#getName()}).</p>
+	 * 
+	 * @param templateId identifier of the template, used as cache key.
+	 * @param template JSON Template used to apply the transformation.
+	 * @return the compiled template.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 */
+	public static CompiledTemplate compile(String templateId, String template) throws InvalidTemplateException {
+		TemplateCache cache = templateCache;
+		if(cache == null) return parseTemplate(template).withName(templateId);
+		
+		return cache.get(templateId, template);
+	}
+	
+	/**
+	 * Parses and compiles the JSON template for inputs that are {@link GroupDatasource}s built from the schema (see {@link ObjectTransformer#compile(Map, GroupSchema)}).
+	 * <p>The template cache is not used, so the result should be kept by the caller (it is thread-safe, like the schema).</p>
+	 * 
+	 * @param template JSON Template used to apply the transformation.
+	 * @param schema the schema of the datasources
+	 * @return the compiled template.
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 */
+	public static CompiledTemplate compile(String template, GroupSchema schema) throws InvalidTemplateException {
+		return compile(parseTemplateMap(template), schema);
+	}
+	
+	/**
+	 * Enables (or disables) the cache of compiled templates used by all the methods that receive a JSON template String.
+	 * <p>It is disabled by default.</p>
+	 * 
+	 * @param cache the cache to use, or <code>null</code> to disable it.
+	 */
+	public static void setTemplateCache(TemplateCache cache) {
+		templateCache = cache;
+	}
+	
+	/**
+	 * @return the cache of compiled templates, or <code>null</code> if it is disabled.
+	 */
+	public static TemplateCache getTemplateCache() {
+		return templateCache;
+	}
+	
+	/**
+	 * Runs the streaming transformation, closing the parser and generator (but not the underlying streams).
+	 * 
+	 * @param template the template reported to the listener, or <code>null</code> if it must not be reported
+	 * @param transformation the compiled template or projection
+	 * @param parser the input parser
+	 * @param generator the output generator
+	 * @return the amount of records transformed
+	 * @throws InvalidInputException if the input cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	private static long stream(CompiledTemplate template, StreamingTransformation transformation, JsonParser parser, JsonGenerator generator) throws InvalidInputException, ObjectTransformerException {
+		parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		
+		TransformListener listener = (template != null)?getTransformListener():TransformListener.NO_OP;
+		long start = (listener != TransformListener.NO_OP)?System.nanoTime():0;
+		
+		try (JsonParser in = parser; JsonGenerator out = generator) {
+			long records = transformation.apply(in, out);
+			
+			if(listener != TransformListener.NO_OP) {
+				out.flush();
+				listener.transformCompleted(template, records, System.nanoTime() - start);
+				listener.inputParsed(template, inputSize(in), -1);
+				listener.outputWritten(template, outputSize(out), -1);
+			}
+			return records;
+		} catch (JsonParseException e) {
+			if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+			throw new InvalidInputException("The input could not be parsed", e);
+		} catch (IOException e) {
+			if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		} catch (RuntimeException e) {
+			if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+			throw new ObjectTransformerException(e);
+		}
+	}
+	
+	/**
+	 * Transforms each input, writing the results with the layout, and reports the whole batch to the listener (the generator is closed, but not the output).
+	 * <p>The size of the parsed input reported is the sum of the sizes of the documents (the objects are not reported).</p>
+	 * 
+	 * @param template the compiled template
+	 * @param inputs the inputs (JSON documents or objects)
+	 * @param layout the layout of the output
+	 * @param generator the output generator
+	 * @param writer transforms an input, writing the result to the generator
+	 * @return the amount of inputs transformed
+	 * @throws InvalidInputException if a document cannot be parsed as JSON.
+	 * @throws ObjectTransformerException if there is any other error while processing (eg. a required field not found on the data source)
+	 */
+	private static <T> long all(CompiledTemplate template, Iterable<T> inputs, JsonLayout layout, JsonGenerator generator, RecordWriter<T> writer) throws InvalidInputException, ObjectTransformerException {
+		if(inputs == null) throw new IllegalArgumentException("The inputs cannot be null");
+		
+		TransformListener listener = getTransformListener();
+		long start = (listener != TransformListener.NO_OP)?System.nanoTime():0;
+		long records = 0;
+		long inputSize = -1;
+		
+		try (JsonGenerator out = generator) {
+			layout.writeStart(out);
+			for(T input : inputs) {
+				if(input == null) {
+					InvalidInputException e = new InvalidInputException("The input at index " + records + " is null", null);
+					if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+					throw e;
+				}
+				long size = writer.write(input, out);
+				if(size >= 0) inputSize = Math.max(inputSize, 0) + size;
+				layout.writeRecordEnd(out);
+				records++;
+			}
+			layout.writeEnd(out);
+			
+			if(listener != TransformListener.NO_OP) {
+				out.flush();
+				listener.transformCompleted(template, records, System.nanoTime() - start);
+				if(inputSize >= 0) listener.inputParsed(template, inputSize, -1);
+				listener.outputWritten(template, outputSize(out), -1);
+			}
+			return records;
+		} catch (JsonParseException e) {
+			if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+			throw new InvalidInputException("The input at index " + records + " could not be parsed", e);
+		} catch (IOException e) {
+			if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+			throw new ObjectTransformerException("There was a problem while reading the input or writing the output", e);
+		} catch (RuntimeException e) {
+			if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+			throw new ObjectTransformerException(e);
+		}
+	}
+	
+	/**
+	 * Writes the transformation of an input object, reporting the metrics if there is a listener (the generator is not closed).
+	 * 
+	 * @param template the compiled template
+	 * @param input the input object
+	 * @param generator the output generator
+	 * @throws ObjectTransformerException if there is any error while processing (eg. a required field not found on the data source)
+	 */
+	private static void write(CompiledTemplate template, Object input, JsonGenerator generator) throws ObjectTransformerException {
+		TransformListener listener = getTransformListener();
+		long start = (listener != TransformListener.NO_OP)?System.nanoTime():0;
+		
+		try {
+			long records = template.write(input, generator);
+			
+			if(listener != TransformListener.NO_OP) {
+				generator.flush();
+				listener.transformCompleted(template, records, System.nanoTime() - start);
+				listener.outputWritten(template, outputSize(generator), -1);
+			}
+		} catch (IOException e) {
+			if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+			throw new ObjectTransformerException("There was a problem while writing the output", e);
+		} catch (RuntimeException e) {
+			if(listener != TransformListener.NO_OP) template.failed(listener, e, System.nanoTime() - start);
+			throw new ObjectTransformerException(e);
+		}
+	}
+	
+	/**
+	 * Adapts the projection to the streaming transformations (the projections are not reported to the listener).
+	 */
+	private static StreamingTransformation streaming(FieldProjection projection) {
+		return (parser, generator) -> {
+			projection.project(parser, generator);
+			return 1;
+		};
+	}
+	
+	/**
+	 * Creates the generator for the output, counting the chars written if there is a listener.
+	 */
+	private static JsonGenerator generator(Writer output) throws IOException {
+		if(getTransformListener() != TransformListener.NO_OP && !(output instanceof StringWriter)) output = new CountingWriter(output);
+		return mapper.getFactory().createGenerator(output).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+	
+	/**
+	 * Creates the generator for the output (UTF-8), counting the bytes written if there is a listener.
+	 */
+	private static JsonGenerator generator(OutputStream output) throws IOException {
+		return generator(output, mapper.getFactory());
+	}
+	
+	/**
+	 * Creates the generator for the output using the specified format, counting the bytes written if there is a listener.
+	 * The internal ObjectMapper is used as codec if the factory has none.
+	 */
+	private static JsonGenerator generator(OutputStream output, JsonFactory format) throws IOException {
+		if(getTransformListener() != TransformListener.NO_OP) output = new CountingOutputStream(output);
+		
+		JsonGenerator generator = format.createGenerator(output, JsonEncoding.UTF8).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		if(generator.getCodec() == null) generator.setCodec(mapper);
+		return generator;
+	}
+	
+	/**
+	 * Creates the parser for the input using the specified format. The internal ObjectMapper is used as codec if the factory has none.
+	 */
+	private static JsonParser parser(InputStream input, JsonFactory format) throws IOException {
+		JsonParser parser = format.createParser(input);
+		if(parser.getCodec() == null) parser.setCodec(mapper);
+		return parser;
+	}
+	
+	/**
+	 * @return the specified format, or the JSON format if it is <code>null</code>
+	 */
+	private static JsonFactory format(JsonFactory format) {
+		return (format != null)?format:mapper.getFactory();
+	}
+	
+	/**
+	 * @return the amount of bytes (or chars) read by the parser
+	 */
+	private static long inputSize(JsonParser parser) {
+		JsonLocation location = parser.getCurrentLocation();
+		return (location.getByteOffset() >= 0)?location.getByteOffset():location.getCharOffset();
+	}
+	
+	/**
+	 * @return the amount of bytes (or chars) written by the generator, or <code>-1</code> if they were not counted
+	 */
+	private static long outputSize(JsonGenerator generator) {
+		Object target = generator.getOutputTarget();
+		if(target instanceof StringWriter) return ((StringWriter)target).getBuffer().length();
+		if(target instanceof CountingWriter) return ((CountingWriter)target).count;
+		if(target instanceof CountingOutputStream) return ((CountingOutputStream)target).count;
+		return -1;
+	}
+	
+	/**
+	 * Creates the lazy stream of results of the records read by the parser.
+	 */
+	private static Stream<Object> records(CompiledTemplate template, JsonParser parser, JsonLayout layout) {
+		parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+		
+		RecordIterator iterator = new RecordIterator(template, parser, layout);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false).onClose(iterator::close);
+	}
+	
+	/**
+	 * Parses and compiles the JSON template without using the cache.
+	 * 
+	 * @param template JSON Template
+	 * @return the compiled template
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 */
+	static CompiledTemplate parseTemplate(String template) throws InvalidTemplateException {
+		return compile(parseTemplateMap(template));
+	}
+	
+	/**
+	 * Parses the JSON template.
+	 * 
+	 * @param template JSON Template
+	 * @return the template Map
+	 * @throws InvalidTemplateException if the template String is empty, null or it is not a valid JSON.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> parseTemplateMap(String template) throws InvalidTemplateException {
 		if(StringUtils.isEmpty(template)) throw new InvalidTemplateException("The template cannot be null");
 
 		try {
-			Map<String, Object> json = mapper.readValue(template, Map.class);
-			return transform(json, input);
-			
+			return mapper.readValue(template, Map.class);
 		} catch (IOException e) {
 			// Error while parsing the template
 			throw new InvalidTemplateException("The template could not be parsed as a Map", e);
 		}
 	}
+	
+	/**
+	 * Iterator that reads and transforms one record at a time.
+	 */
+	private static class RecordIterator implements Iterator<Object> {
+		private final CompiledTemplate template;
+		private final JsonParser parser;
+		private final JsonLayout layout;
+		/** <code>null</code> if it is not known yet if there is another record */
+		private Boolean pending;
+		
+		RecordIterator(CompiledTemplate template, JsonParser parser, JsonLayout layout) {
+			this.template = template;
+			this.parser = parser;
+			this.layout = layout;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if(pending == null) {
+				try {
+					pending = layout.nextRecord(parser);
+				} catch (JsonParseException e) {
+					throw new UncheckedTransformerException(new InvalidInputException("The input could not be parsed", e));
+				} catch (IOException e) {
+					throw new UncheckedTransformerException(new ObjectTransformerException("There was a problem while reading the input", e));
+				}
+				if(!pending) close();
+			}
+			return pending;
+		}
+		
+		@Override
+		public Object next() {
+			if(!hasNext()) throw new NoSuchElementException();
+			pending = null;
+			
+			Object record;
+			try {
+				record = template.readInput(parser);
+			} catch (JsonProcessingException e) {
+				throw new UncheckedTransformerException(new InvalidInputException("The input could not be parsed", e));
+			} catch (IOException e) {
+				throw new UncheckedTransformerException(new ObjectTransformerException("There was a problem while reading the input", e));
+			}
+			
+			try {
+				return template.transform(record);
+			} catch (ObjectTransformerException e) {
+				throw new UncheckedTransformerException(e);
+			}
+		}
+		
+		void close() {
+			try {
+				parser.close();
+			} catch (IOException e) {
+				throw new UncheckedTransformerException(new ObjectTransformerException("There was a problem while closing the input", e));
+			}
+		}
+	}
+	
+	/**
+	 * Transformation that reads the input from a parser and writes the result to a generator.
+	 */
+	private interface StreamingTransformation {
+		/**
+		 * @return the amount of records transformed
+		 */
+		long apply(JsonParser parser, JsonGenerator generator) throws IOException;
+	}
+	
+	/**
+	 * Transformation of one of the inputs of {@link JsonTransformer#transformAll(CompiledTemplate, Iterable, Writer, JsonLayout)}.
+	 */
+	private interface RecordWriter<T> {
+		/**
+		 * @return the size of the document parsed, or <code>-1</code> if the input is an object
+		 */
+		long write(T input, JsonGenerator generator) throws IOException;
+	}
+	
+	/**
+	 * Writer that counts the chars written.
+	 */
+	private static class CountingWriter extends FilterWriter {
+		private long count;
+		
+		CountingWriter(Writer out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(int c) throws IOException {
+			out.write(c);
+			count++;
+		}
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			out.write(cbuf, off, len);
+			count += len;
+		}
+		
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			out.write(str, off, len);
+			count += len;
+		}
+	}
+	
+	/**
+	 * Output stream that counts the bytes written (also used by {@link BatchTransformer}).
+	 */
+	static class CountingOutputStream extends FilterOutputStream {
+		long count;
+		
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
 
 }
@@ -0,0 +1,225 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Read-only Map and List views whose values are calculated the first time they are accessed (see {@link CompiledTemplate#transformLazy(Object)}).
+ * <p>Each value is calculated at most once and then kept, so untouched values cost nothing.
+ * The views can be read by several threads: the values are published with an {@link AtomicReferenceArray}, so a value calculated by a thread
+ * is fully visible to the others. If two threads read the same value at the same time, it may be calculated twice, but both get the one stored first.</p>
+ * <p>The errors found while calculating a value are thrown as {@link UncheckedTransformerException} when it is accessed.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+final class LazyResults {
+
+	/** Marks the values that were not calculated yet */
+	private static final Object PENDING = new Object();
+
+	private LazyResults() {}
+
+	/**
+	 * Creates a Map view with the specified keys.
+	 *
+	 * @param keys the keys, in order (they must not be repeated)
+	 * @param values calculates the value of the key at the specified index
+	 * @return the read-only view
+	 */
+	static Map<String, Object> map(String[] keys, IntFunction<Object> values) {
+		return new LazyMap(keys, values);
+	}
+
+	/**
+	 * Creates a List view with the results of the items.
+	 *
+	 * @param items the items of the input collection
+	 * @param function calculates the result of an item
+	 * @return the read-only view
+	 */
+	static List<Object> list(Collection<?> items, Function<Object, Object> function) {
+		return new LazyList(items.toArray(), function);
+	}
+
+	private static AtomicReferenceArray<Object> pending(int size) {
+		Object[] values = new Object[size];
+		Arrays.fill(values, PENDING);
+		return new AtomicReferenceArray<>(values);
+	}
+
+	/**
+	 * Returns a value, calculating and storing it if it was not calculated yet.
+	 *
+	 * @param values the values of the view
+	 * @param index the index of the value
+	 * @param argument the argument of the function
+	 * @param function calculates the value
+	 * @return the value stored
+	 */
+	private static <T> Object value(AtomicReferenceArray<Object> values, int index, T argument, Function<T, Object> function) {
+		Object value = values.get(index);
+		if(value != PENDING) return value;
+
+		value = calculate(argument, function);
+		return values.compareAndSet(index, PENDING, value)?value:values.get(index);
+	}
+
+	/**
+	 * Calculates a value, wrapping the errors.
+	 */
+	private static <T> Object calculate(T argument, Function<T, Object> function) {
+		try {
+			return function.apply(argument);
+		} catch(UncheckedTransformerException e) {
+			throw e;
+		} catch(RuntimeException e) {
+			throw new UncheckedTransformerException(new ObjectTransformerException(e));
+		}
+	}
+
+	private static class LazyMap extends AbstractMap<String, Object> {
+		private final String[] keys;
+		private final IntFunction<Object> function;
+		private final AtomicReferenceArray<Object> values;
+
+		LazyMap(String[] keys, IntFunction<Object> function) {
+			this.keys = keys;
+			this.function = function;
+			this.values = pending(keys.length);
+		}
+
+		private Object value(int index) {
+			return LazyResults.value(values, index, index, function::apply);
+		}
+
+		private int indexOf(Object key) {
+			for(int i = 0; i < keys.length; i++) {
+				if(keys[i].equals(key)) return i;
+			}
+			return -1;
+		}
+
+		@Override
+		public Object get(Object key) {
+			int index = indexOf(key);
+			return (index < 0)?null:value(index);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return keys.length;
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					return new Iterator<Entry<String, Object>>() {
+						private int next = 0;
+
+						@Override
+						public boolean hasNext() {
+							return next < keys.length;
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							if(next >= keys.length) throw new NoSuchElementException();
+							return new LazyEntry(next++);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return keys.length;
+				}
+			};
+		}
+
+		/**
+		 * Entry whose value is calculated when it is read (so iterating the keys does not calculate the values).
+		 */
+		private class LazyEntry implements Entry<String, Object> {
+			private final int index;
+
+			LazyEntry(int index) {
+				this.index = index;
+			}
+
+			@Override
+			public String getKey() {
+				return keys[index];
+			}
+
+			@Override
+			public Object getValue() {
+				return value(index);
+			}
+
+			@Override
+			public Object setValue(Object value) {
+				throw new UnsupportedOperationException("The result is read-only");
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				if(!(o instanceof Entry)) return false;
+				Entry<?, ?> other = (Entry<?, ?>)o;
+				return getKey().equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+			}
+
+			@Override
+			public int hashCode() {
+				return getKey().hashCode() ^ Objects.hashCode(getValue());
+			}
+
+			@Override
+			public String toString() {
+				return getKey() + "=" + getValue();
+			}
+		}
+	}
+
+	private static class LazyList extends AbstractList<Object> implements RandomAccess {
+		private final Object[] items;
+		private final Function<Object, Object> function;
+		private final AtomicReferenceArray<Object> values;
+
+		LazyList(Object[] items, Function<Object, Object> function) {
+			this.items = items;
+			this.function = function;
+			this.values = pending(items.length);
+		}
+
+		@Override
+		public Object get(int index) {
+			return value(values, index, items[index], function);
+		}
+
+		@Override
+		public int size() {
+			return items.length;
+		}
+	}
+}
@@ -1,13 +1,21 @@
 package com.mmoscovich.beanmap.utils;
 
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -17,6 +25,8 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.ClassUtils;
 
+import com.fasterxml.jackson.annotation.JacksonAnnotation;
+import com.fasterxml.jackson.databind.JsonSerializable;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -29,6 +39,28 @@ public class MapUtils {
 	
 	private static ObjectMapper mapper = new ObjectMapper();
 	
+	/** Whether the serialization of each class is customized for Jackson (annotations in the class, its supertypes or their members) */
+	private static final ClassValue<Boolean> CUSTOM_SERIALIZATION = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			if(JsonSerializable.class.isAssignableFrom(type)) return true;
+			
+			List<Class<?>> types = ClassUtils.getAllSuperclasses(type);
+			types.addAll(ClassUtils.getAllInterfaces(type));
+			types.add(type);
+			for(Class<?> current : types) {
+				if(hasJacksonAnnotations(current)) return true;
+				for(Field field : current.getDeclaredFields()) {
+					if(hasJacksonAnnotations(field)) return true;
+				}
+				for(Method method : current.getDeclaredMethods()) {
+					if(hasJacksonAnnotations(method)) return true;
+				}
+			}
+			return false;
+		}
+	};
+	
 	/**
 	 * Builds a Properties from a Map (the value is converted to String using  {@link #toString()}).
 	 * 
@@ -36,14 +68,70 @@ public class MapUtils {
 	 * @return the properties object
 	 */
 	public static Properties mapToProperties(Map<String, Object> map) {
-		Map<String, Object> result = flattenMap(map);
 		Properties p = new Properties();
-		for(Entry<String, Object> entry : result.entrySet()) {
-			p.setProperty(entry.getKey(), entry.getValue().toString());
-		}
+		flattenMap(map, false, (key, value) -> p.setProperty(key, value.toString()));
 		return p;
 	}
 	
+	/**
+	 * Builds a nested Map from a Properties object, using the dot notation of the keys to create the nested maps
+	 * (see {@link #unflattenMap(Map)}).
+	 * <p>The default values of the Properties are included.</p>
+	 * 
+	 * @param properties the properties to convert
+	 * @return the nested map
+	 * @throws IllegalArgumentException if a key is used both as a value and as a nested map (eg. <code>person</code> and <code>person.name</code>)
+	 */
+	public static Map<String, Object> propertiesToMap(Properties properties) throws IllegalArgumentException {
+		Map<String, Object> result = new LinkedHashMap<>();
+		for(String key : properties.stringPropertyNames()) {
+			putNested(result, key, properties.getProperty(key));
+		}
+		return result;
+	}
+	
+	/**
+	 * Creates a nested map from a flat map that uses the dot notation for nested keys (the inverse of {@link #flattenMap(Map)}).
+	 * <p>For example, the keys "person.name" and "person.age" are converted into a "person" entry whose value is a map
+	 * with two entries: "name" and "age". The nested maps keep the order of the keys.</p>
+	 * 
+	 * @param flatMap the flat map
+	 * @return the nested map
+	 * @throws IllegalArgumentException if a key is used both as a value and as a nested map (eg. <code>person</code> and <code>person.name</code>)
+	 */
+	public static Map<String, Object> unflattenMap(Map<String, ?> flatMap) throws IllegalArgumentException {
+		Map<String, Object> result = new LinkedHashMap<>();
+		for(Entry<String, ?> entry : flatMap.entrySet()) {
+			putNested(result, entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+	
+	/**
+	 * Puts the value in the nested map of its key, creating the nested maps that do not exist.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void putNested(Map<String, Object> root, String key, Object value) {
+		Map<String, Object> current = root;
+		int start = 0;
+		for(int dot = key.indexOf('.'); dot >= 0; dot = key.indexOf('.', start)) {
+			String name = key.substring(start, dot);
+			Object nested = current.get(name);
+			if(nested == null) {
+				nested = new LinkedHashMap<String, Object>();
+				current.put(name, nested);
+			} else if(!(nested instanceof Map)) {
+				throw new IllegalArgumentException("The key '" + key + "' conflicts with the key '" + key.substring(0, dot) + "'");
+			}
+			current = (Map<String, Object>)nested;
+			start = dot + 1;
+		}
+		
+		String name = key.substring(start);
+		if(current.get(name) instanceof Map) throw new IllegalArgumentException("The key '" + key + "' conflicts with the nested keys '" + key + ".*'");
+		current.put(name, value);
+	}
+	
 	/**
 	 * Builds a nested map from a bean.
 	 * <p>Each entry of the map will correspond to one of the bean's properties, using the property name as key and its value as value.
@@ -58,6 +146,25 @@ public class MapUtils {
 		return mapper.convertValue(bean, Map.class);
 	}
 	
+	/**
+	 * Returns a read-only Map backed by the bean, without copying it.
+	 * <p>Each entry corresponds to one of the bean's properties (except <code>class</code>). The values are read with the getters
+	 * (introspected only once per class) when they are accessed, so the map reflects the changes of the bean.
+	 * <br>If the value is another complex bean (or a collection of beans), it is wrapped with the same kind of view when it is read.
+	 * Unlike {@link #beanToMap(Object)}, the simple values are not converted (eg. enums and dates are returned as they are).</p>
+	 * 
+	 * @param bean the bean to adapt
+	 * @return a read-only Map view of the bean (or the same object if it is already a Map)
+	 * @throws IllegalArgumentException if the bean is <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> asMap(Object bean) throws IllegalArgumentException {
+		if(bean == null) throw new IllegalArgumentException("The bean cannot be null");
+		if(bean instanceof Map) return (Map<String, Object>)bean;
+		
+		return new BeanMapView(bean);
+	}
+	
 	/**
 	 * Builds a flat map from a bean.
 	 * <p>Each entry of the map will correspond to one of the bean's properties, using the property name as key and its value as value.
@@ -65,12 +172,84 @@ public class MapUtils {
 	 * but the key will have the root's property name and the sub-bean property name, separated with a dot, similar to a properties file</p>
 	 * For example, if the original bean has a property name person and that property is a bean with two attributes, name and age, the map will
 	 * contain two keys: "person.name" and "person.age"
+	 * <p>The bean is traversed directly with its getters (introspected only once per class), without building a nested map first.
+	 * The enums are converted to their names and the dates to milliseconds (like {@link #beanToMap(Object)}) and the rest of the simple values
+	 * are used as they are. The collections, the JDK types (eg. <code>UUID</code> or <code>Locale</code>) and the beans that use Jackson annotations
+	 * are converted with Jackson, so the result is the same as flattening {@link #beanToMap(Object)}.</p>
 	 * 
-	 * @param bean the bean to convert
+	 * @param bean the bean (or map) to convert
 	 * @return a flat map that represents the bean.
+	 * @throws IllegalArgumentException if the bean is not a bean or a map, or if it references itself (directly or through its nested beans)
+	 */
+	public static Map<String, Object> beanToFlatMap(Object bean) throws IllegalArgumentException {
+		Map<String, Object> result = new HashMap<>();
+		beanToFlatMap(bean, result::put);
+		return result;
+	}
+	
+	/**
+	 * Flattens a bean like {@link #beanToFlatMap(Object)}, but instead of creating a new map, each flat entry
+	 * is passed to the sink as soon as it is found.
+	 * 
+	 * @param bean the bean (or map) to convert
+	 * @param sink receives the key and the value of each flat entry
+	 * @throws IllegalArgumentException if the bean is not a bean or a map, or if it references itself (directly or through its nested beans)
+	 */
+	public static void beanToFlatMap(Object bean, BiConsumer<String, Object> sink) throws IllegalArgumentException {
+		if(!(bean instanceof Map) && !isComplex(bean)) throw new IllegalArgumentException("The object is not a bean: " + bean);
+		
+		flattenValue(bean, new StringBuilder(64), Collections.newSetFromMap(new IdentityHashMap<>()), sink);
+	}
+	
+	/**
+	 * Passes the flat entries of the bean or map to the sink, appending the keys to the prefix (it is restored before returning).
+	 * 
+	 * @param bean the bean or map
+	 * @param prefix the key of the bean
+	 * @param path the beans that are being flattened (the current one and its parents), used to detect cycles
+	 * @param sink receives the entries
 	 */
-	public static Map<String, Object> beanToFlatMap(Object bean) {
-		return flattenMap(beanToMap(bean), "", true);
+	private static void flattenBean(Object bean, StringBuilder prefix, Set<Object> path, BiConsumer<String, Object> sink) {
+		if(!path.add(bean)) throw new IllegalArgumentException("The object references itself at '" + prefix + "'");
+		
+		int length = prefix.length();
+		if(bean instanceof Map) {
+			for(Entry<?, ?> entry : ((Map<?, ?>)bean).entrySet()) {
+				if(length > 0) prefix.append('.');
+				prefix.append(entry.getKey());
+				flattenValue(entry.getValue(), prefix, path, sink);
+				prefix.setLength(length);
+			}
+		} else {
+			for(BeanAccessors.Getter getter : BeanAccessors.of(bean.getClass()).properties()) {
+				if(length > 0) prefix.append('.');
+				prefix.append(getter.getName());
+				flattenValue(getter.get(bean), prefix, path, sink);
+				prefix.setLength(length);
+			}
+		}
+		
+		path.remove(bean);
+	}
+	
+	private static void flattenValue(Object value, StringBuilder prefix, Set<Object> path, BiConsumer<String, Object> sink) {
+		if(value instanceof Map || isPlainBean(value)) {
+			flattenBean(value, prefix, path, sink);
+		} else if(value instanceof Enum) {
+			sink.accept(prefix.toString(), ((Enum<?>)value).name());
+		} else if(value instanceof Date) {
+			sink.accept(prefix.toString(), ((Date)value).getTime());
+		} else if(value == null || value instanceof CharSequence || value instanceof Number || ClassUtils.isPrimitiveOrWrapper(value.getClass())) {
+			sink.accept(prefix.toString(), value);
+		} else {
+			// Collections, JDK types and beans with Jackson annotations (the converted beans are nested maps)
+			Object converted = mapper.convertValue(value, Object.class);
+			if(converted instanceof Map) {
+				flattenBean(converted, prefix, path, sink);
+			} else {
+				sink.accept(prefix.toString(), converted);
+			}
+		}
 	}
 	
 	/**
@@ -106,22 +285,50 @@ public class MapUtils {
 	public static Map<String, Object> flattenMap(Map<String, Object> nestedMap, boolean convertBeans) {
 		return flattenMap(nestedMap, "", convertBeans);
 	}
+	
+	/**
+	 * Flattens a nested map like {@link #flattenMap(Map, boolean)}, but instead of creating a new map, each flat entry
+	 * is passed to the sink as soon as it is found (eg. to write it or to add it to an existing map).
+	 * <p>The map is traversed only once and the keys are built with a single buffer.</p>
+	 * 
+	 * @param nestedMap the complex nested map to flatten
+	 * @param convertBeans if <code>true</code>, the complex beans will be also flatten as entries. Otherwise, the complex bean will be 
+	 * passed as is
+	 * @param sink receives the key and the value of each flat entry
+	 */
+	public static void flattenMap(Map<String, ?> nestedMap, boolean convertBeans, BiConsumer<String, Object> sink) {
+		flatten(nestedMap, new StringBuilder(64), convertBeans, sink);
+	}
 		
-	@SuppressWarnings("unchecked")
 	private static Map<String, Object> flattenMap(Map<String, Object> map, String prefix, boolean convertBeans) {
-		Map<String, Object> result = new HashMap<>();
-		if(prefix == null) prefix = "";
-		for(Entry<String, Object> entry : map.entrySet()) {
-			String key = prefix + (prefix.isEmpty()?"":".") + entry.getKey();
-			if(entry.getValue() instanceof Map) {
-				result.putAll(flattenMap((Map<String, Object>) entry.getValue(), key, convertBeans));
-			} else if(convertBeans && isComplex(entry.getValue())) {
-				result.putAll(flattenMap(beanToMap(entry.getValue()), key, convertBeans));
+		Map<String, Object> result = new HashMap<>(capacity(map.size()));
+		flatten(map, new StringBuilder(64).append(prefix), convertBeans, result::put);
+		return result;
+	}
+	
+	/**
+	 * Passes the flat entries of the map to the sink, appending the keys to the prefix (it is restored before returning).
+	 */
+	private static void flatten(Map<?, ?> map, StringBuilder prefix, boolean convertBeans, BiConsumer<String, Object> sink) {
+		int length = prefix.length();
+		for(Entry<?, ?> entry : map.entrySet()) {
+			if(length > 0) prefix.append('.');
+			prefix.append(entry.getKey());
+			
+			Object value = entry.getValue();
+			if(value instanceof Map) {
+				flatten((Map<?, ?>)value, prefix, convertBeans, sink);
+			} else if(convertBeans && isComplex(value)) {
+				flattenValue(value, prefix, Collections.newSetFromMap(new IdentityHashMap<>()), sink);
 			} else {
-				result.put(key, entry.getValue());
+				sink.accept(prefix.toString(), value);
 			}
+			prefix.setLength(length);
 		}
-		return result;
+	}
+	
+	private static int capacity(int size) {
+		return (size * 4 / 3) + 1;
 	}
 	
 	/**
@@ -259,7 +466,32 @@ public class MapUtils {
         return (u,v) -> { throw new IllegalStateException(String.format("Duplicate key %s", u)); };
     }
 	
-	private static boolean isComplex(Object o) {
-		return (o != null && !(o instanceof String) && !(o instanceof Date) && !ClassUtils.isPrimitiveOrWrapper(o.getClass()));
+	/**
+	 * A value is complex if it is a bean with properties (not a simple value, an enum, a collection, an array or any other JDK type).
+	 */
+	static boolean isComplex(Object o) {
+		return (o != null && !(o instanceof CharSequence) && !(o instanceof Number) && !(o instanceof Date) && !(o instanceof Enum)
+				&& !(o instanceof Collection) && !o.getClass().isArray() && !ClassUtils.isPrimitiveOrWrapper(o.getClass())
+				&& !isJdkType(o.getClass()));
+	}
+	
+	/**
+	 * A value is a plain bean if it is complex and Jackson serializes it with its getters, so it can be traversed directly
+	 * (it does not use Jackson annotations nor implements {@link JsonSerializable}).
+	 */
+	private static boolean isPlainBean(Object o) {
+		return isComplex(o) && !CUSTOM_SERIALIZATION.get(o.getClass());
+	}
+	
+	private static boolean isJdkType(Class<?> type) {
+		String name = type.getName();
+		return name.startsWith("java.") || name.startsWith("javax.");
+	}
+	
+	private static boolean hasJacksonAnnotations(AnnotatedElement element) {
+		for(Annotation annotation : element.getDeclaredAnnotations()) {
+			if(annotation.annotationType().isAnnotationPresent(JacksonAnnotation.class)) return true;
+		}
+		return false;
 	}
 }
@@ -1,13 +1,14 @@
 package com.mmoscovich.beanmap.utils;
 
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang3.ClassUtils;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 /**
  * Class that allows to navigate an object's properties.
  * <p>
@@ -15,6 +16,8 @@ import org.apache.commons.lang3.ClassUtils;
  * <ul>
  * <li>When passed a POJO, it uses reflection to access the actual properties.</li>
  * <li>When passed a Map, it uses the entries' keys instead of the actual properties.</li>
+ * <li>When passed a Jackson {@link JsonNode}, it uses the fields of the node. The arrays are returned as read-only Lists
+ * and the scalar nodes as their values (the tree is not converted).</li>
  * </ul>
  * </p>
  * 
@@ -43,7 +46,42 @@ public class ObjectNavigator {
 	public static <T> T findValue(Object src, String path) throws IllegalArgumentException {
 		if(src == null) return null;
 		if(path == null || path.isEmpty()) throw new IllegalArgumentException("The path cannot be null or empty");
-		return (T) findValueRecursive(path, src);
+		return (T) findValue(src, PropertyPath.literal(path));
+	}
+	
+	/**
+	 * Find the specified attribute in the source, using a path that has already been parsed.
+	 * <p>The path is resolved iteratively, without creating any intermediate String. 
+	 * The optional marker, the default value and the <code>ENTITY</code> forms are ignored (see {@link EnhancedObjectNavigator#findValue(Object, PropertyPath)}).</p>
+	 * 
+	 * @param src the object to retrieve the data from (POJO or Map)
+	 * @param path the parsed path to the property
+	 * @return the value of the property or <code>null</code> if the property is not found or the source is <code>null</code>. 
+	 * @throws IllegalArgumentException if the path is <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T findValue(Object src, PropertyPath path) throws IllegalArgumentException {
+		if(src == null) return null;
+		if(path == null) throw new IllegalArgumentException("The path cannot be null");
+		
+		String[] segments = path.segments();
+		return (T) findValue(getSimpleFieldValue(src, segments[0]), segments, 1);
+	}
+	
+	/**
+	 * Continues the navigation of a path from the specified segment.
+	 * 
+	 * @param value the value of the previous segment
+	 * @param segments the path segments
+	 * @param from the index of the first segment to resolve
+	 * @return the value of the property or <code>null</code> if the property is not found or the value is <code>null</code>.
+	 */
+	static Object findValue(Object value, String[] segments, int from) {
+		for(int i = from; i < segments.length && value != null; i++) {
+			if(ClassUtils.isPrimitiveOrWrapper(value.getClass())) return null;
+			value = getSimpleFieldValue(value, segments[i]);
+		}
+		return value;
 	}
 	
 	/**
@@ -51,12 +89,13 @@ public class ObjectNavigator {
 	 * <p>
 	 * It works with both POJOs and Maps. 
 	 * <ul>
-	 * <li>When passed a POJO, it uses reflection to access the actual properties.</li>
+	 * <li>When passed a POJO, it uses the getters (introspected only once per class) to access the actual properties.</li>
 	 * <li>When passed a Map, it uses the entries' keys instead of the actual properties.</li>
+	 * <li>When passed a {@link JsonNode}, it uses the fields of the node.</li>
 	 * </ul>
 	 * </p>
 	 * 
-	 * @param src the object to retrieve the data from (POJO or Map)
+	 * @param src the object to retrieve the data from (POJO, Map or JsonNode)
 	 * @param fieldName name of the property (nested not allowed)
 	 * @return the value
 	 */
@@ -64,14 +103,58 @@ public class ObjectNavigator {
 	public static Object getSimpleFieldValue(Object src, String fieldName) {
     	if(src instanceof Map) return ((Map<Object,Object>)src).get(fieldName);
     	if(src instanceof GroupDatasource) return ((GroupDatasource)src).get(fieldName);
+    	if(src instanceof JsonNode) return JsonNodes.get((JsonNode)src, fieldName);
+    	if(src == null) return null;
     	
     	try {
-    		return PropertyUtils.getProperty(src, fieldName);
+    		BeanAccessors.Getter getter = BeanAccessors.of(src.getClass()).getter(fieldName);
+    		if(getter != null) return getter.get(src);
+    		
+    		// Indexed and mapped properties (eg. items[0] or values(key)) are resolved by BeanUtils,
+    		// but only if the class has the property (so the missing ones do not throw an exception)
+    		int index = indexedPropertyEnd(fieldName);
+    		if(index > 0 && BeanAccessors.of(src.getClass()).getter(fieldName.substring(0, index)) != null) return PropertyUtils.getProperty(src, fieldName);
+    		
+    		return null;
 		} catch (Exception e) {
 			return null;
 		}
     }
 	
+	/**
+	 * Checks if the object has a single-level property (nested not allowed), without reading it.
+	 * <p>It works with the same objects as {@link #getSimpleFieldValue(Object, String)}. The properties of the beans are looked up
+	 * in the getters introspected once per class, so a missing property does not throw (nor catch) any exception.
+	 * The entries of a Map (and the fields of a JsonNode) exist even if their value is <code>null</code>.</p>
+	 * 
+	 * @param src the object (POJO, Map or JsonNode)
+	 * @param fieldName name of the property (nested not allowed)
+	 * @return <code>true</code> if the property exists
+	 */
+	public static boolean hasProperty(Object src, String fieldName) {
+		if(src instanceof Map) return ((Map<?,?>)src).containsKey(fieldName);
+		if(src instanceof GroupDatasource) return ((GroupDatasource)src).get(fieldName) != null || hasProperty(((GroupDatasource)src).getDefault(), fieldName);
+		if(src instanceof JsonNode) return ((JsonNode)src).has(fieldName);
+		if(src == null) return false;
+		
+		BeanAccessors accessors = BeanAccessors.of(src.getClass());
+		if(accessors.getter(fieldName) != null) return true;
+		
+		int index = indexedPropertyEnd(fieldName);
+		return index > 0 && accessors.getter(fieldName.substring(0, index)) != null;
+	}
+	
+	/**
+	 * @return the length of the property name of an indexed or mapped property (eg. <code>items[0]</code> or <code>values(key)</code>), or <code>-1</code> if it is not indexed
+	 */
+	private static int indexedPropertyEnd(String fieldName) {
+		for(int i = 0; i < fieldName.length(); i++) {
+			char c = fieldName.charAt(i);
+			if(c == '[' || c == '(') return i;
+		}
+		return -1;
+	}
+	
 	/**
 	 * Retrieves all the available properties from an object.
 	 * <p>
@@ -79,28 +162,19 @@ public class ObjectNavigator {
 	 * <ul>
 	 * <li>When passed a POJO, it uses reflection to access the actual properties.</li>
 	 * <li>When passed a Map, it uses the entries' keys instead of the actual properties.</li>
+	 * <li>When passed a {@link JsonNode}, it uses the field names of the node.</li>
 	 * </ul>
 	 * </p>
 	 * 
-	 * @param o the object to retrieve the properties from (POJO or Map)
+	 * @param o the object to retrieve the properties from (POJO, Map or JsonNode)
 	 * @return the list of property names.
 	 */
 	@SuppressWarnings("unchecked")
 	public static Set<String> getProperties(Object o) {
 		if(o instanceof Map) return ((Map<String,Object>)o).keySet();
+		if(o instanceof JsonNode) return JsonNodes.fieldNames((JsonNode)o);
+		if(o == null) return Collections.emptySet();
 		
-		return Arrays.stream(PropertyUtils.getPropertyDescriptors(o)).map(p -> p.getName()).collect(Collectors.toSet());
-	}
-	
-	private static Object findValueRecursive(String key, Object parent) {
-		String[] keys = key.split("\\.");
-		
-		Object value = getSimpleFieldValue(parent, keys[0]);
-		if(keys.length == 1 || value == null) return value;
-					
-		if(ClassUtils.isPrimitiveOrWrapper(value.getClass())) return null;
-		
-		String[] newKeys = Arrays.copyOfRange(keys, 1, keys.length);
-		return findValueRecursive(String.join(".",newKeys), value);
+		return BeanAccessors.of(o.getClass()).names();
 	}
 }
@@ -0,0 +1,148 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.util.Arrays;
+
+/**
+ * Parsed version of a property path, so it can be resolved any number of times without parsing it again.
+ * <p>The path uses the dot notation for nested properties (eg. <code>person</code> or <code>person.address.street</code>) and supports
+ * the same features as {@link EnhancedObjectNavigator#findValue(Object, String)}:
+ * <ul>
+ * <li>If the path is "<code>ENTITY</code>" or "<code>=</code>", it references the source itself.</li>
+ * <li>The path can be declared optional by ending it with "<code>?</code>", optionally followed by a default value (eg. <code>person.title?Mr.</code>).</li>
+ * </ul>
+ * </p>
+ * <p>Instances are immutable and thread-safe.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public final class PropertyPath {
+
+	private final String text;
+	private final String[] segments;
+	private final boolean optional;
+	private final String defaultValue;
+	private final boolean entity;
+
+	private PropertyPath(String text, String[] segments, boolean optional, String defaultValue, boolean entity) {
+		this.text = text;
+		this.segments = segments;
+		this.optional = optional;
+		this.defaultValue = defaultValue;
+		this.entity = entity;
+	}
+
+	/**
+	 * Parses the path, including the optional marker, the default value and the <code>ENTITY</code>/<code>=</code> forms.
+	 *
+	 * @param path the path to parse (eg. <code>person.address.street</code> or <code>person.title?Mr.</code>)
+	 * @return the parsed path
+	 * @throws IllegalArgumentException if the path is <code>null</code> or empty.
+	 */
+	public static PropertyPath parse(String path) throws IllegalArgumentException {
+		if(path == null || path.isEmpty()) throw new IllegalArgumentException("The path cannot be null or empty");
+
+		boolean optional = path.indexOf('?') >= 0;
+		String[] parts = path.split("\\?");
+		if(parts.length == 0 || parts[0].isEmpty()) throw new IllegalArgumentException("The path '" + path + "' does not contain a property name");
+
+		String base = parts[0];
+		boolean entity = base.equals("ENTITY") || base.equals("=");
+
+		return new PropertyPath(path, base.split("\\."), optional, (parts.length > 1)?parts[1]:null, entity);
+	}
+
+	/**
+	 * Parses the path using only the dot notation (ie. the optional marker and the <code>ENTITY</code> forms are not considered).
+	 * <p>This is the syntax used by {@link ObjectNavigator#findValue(Object, String)}.</p>
+	 *
+	 * @param path the path to parse
+	 * @return the parsed path
+	 * @throws IllegalArgumentException if the path is <code>null</code> or empty.
+	 */
+	static PropertyPath literal(String path) throws IllegalArgumentException {
+		if(path == null || path.isEmpty()) throw new IllegalArgumentException("The path cannot be null or empty");
+
+		return new PropertyPath(path, path.split("\\."), false, null, false);
+	}
+
+	/**
+	 * Creates a path of a single property, without parsing the name (the dots, the optional marker and the <code>ENTITY</code> forms
+	 * are part of the name).
+	 * <p>It is used for the properties found in the input, which are read directly from their owner.</p>
+	 *
+	 * @param name the property name
+	 * @return the path
+	 * @throws IllegalArgumentException if the name is <code>null</code>.
+	 */
+	static PropertyPath property(String name) throws IllegalArgumentException {
+		if(name == null) throw new IllegalArgumentException("The property name cannot be null");
+
+		return new PropertyPath(name, new String[] { name }, false, null, false);
+	}
+
+	/**
+	 * @return the amount of levels of the path (eg. 3 for <code>person.address.street</code>)
+	 */
+	public int size() {
+		return segments.length;
+	}
+
+	/**
+	 * @param index the level of the path (zero-based)
+	 * @return the property name at the specified level.
+	 */
+	public String getSegment(int index) {
+		return segments[index];
+	}
+
+	/**
+	 * @return <code>true</code> if the path was marked as optional with "<code>?</code>".
+	 */
+	public boolean isOptional() {
+		return optional;
+	}
+
+	/**
+	 * @return the value to use when the optional property is not found, or <code>null</code> if there is none.
+	 */
+	public String getDefaultValue() {
+		return defaultValue;
+	}
+
+	/**
+	 * @return <code>true</code> if the path references the source itself (<code>ENTITY</code> or <code>=</code>).
+	 */
+	public boolean isEntity() {
+		return entity;
+	}
+
+	/**
+	 * Navigation segments. They are not copied, so they must not be modified.
+	 */
+	String[] segments() {
+		return segments;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(!(o instanceof PropertyPath)) return false;
+
+		PropertyPath other = (PropertyPath)o;
+		return text.equals(other.text) && optional == other.optional && entity == other.entity && Arrays.equals(segments, other.segments);
+	}
+
+	@Override
+	public int hashCode() {
+		return text.hashCode();
+	}
+
+	/**
+	 * @return the original path String
+	 */
+	@Override
+	public String toString() {
+		return text;
+	}
+}
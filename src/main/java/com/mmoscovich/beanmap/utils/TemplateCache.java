@@ -0,0 +1,187 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded, thread-safe cache of compiled JSON templates, used by {@link JsonTransformer} when it is enabled
+ * with {@link JsonTransformer#setTemplateCache(TemplateCache)}.
+ * <p>The key is either the template String itself or an identifier supplied by the caller.
+ * When the cache is full, the least recently used templates are evicted.</p>
+ * <p>To reduce contention, the entries are distributed in independently locked segments, each one with its own LRU order.
+ * Therefore, the eviction order is approximate and the size may slightly exceed the maximum (by less than the number of segments).</p>
+ * <p>The hit, miss and eviction counters can be used to size the cache.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public class TemplateCache {
+
+	private static final int MAX_SEGMENTS = 16;
+
+	private final Segment[] segments;
+	private final int maximumSize;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maximumSize the maximum amount of templates to keep.
+	 * @throws IllegalArgumentException if the size is not positive.
+	 */
+	public TemplateCache(int maximumSize) throws IllegalArgumentException {
+		if(maximumSize <= 0) throw new IllegalArgumentException("The maximum size must be positive");
+		this.maximumSize = maximumSize;
+
+		int segmentCount = 1;
+		while(segmentCount < MAX_SEGMENTS && segmentCount * 2 <= maximumSize) segmentCount *= 2;
+
+		int segmentSize = (maximumSize + segmentCount - 1) / segmentCount;
+		this.segments = new Segment[segmentCount];
+		for(int i = 0; i < segmentCount; i++) segments[i] = new Segment(segmentSize);
+	}
+
+	/**
+	 * Returns the compiled version of the JSON template, using the template String as key.
+	 * <p>If the template is not in the cache, it is parsed, compiled and added.</p>
+	 *
+	 * @param template the JSON template.
+	 * @return the compiled template
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 */
+	public CompiledTemplate get(String template) throws InvalidTemplateException {
+		return get(template, template, false);
+	}
+
+	/**
+	 * Returns the compiled template associated with the identifier.
+	 * <p>If the identifier is not in the cache, the template is parsed, compiled and added.
+	 * The caller must make sure the same identifier is always used for the same template.</p>
+	 * <p>The identifier is also used as the template name (see {@link CompiledTemplate#getName()}).</p>
+	 *
+	 * @param templateId the identifier of the template.
+	 * @param template the JSON template.
+	 * @return the compiled template
+	 * @throws InvalidTemplateException if the template String is empty, null, contains no properties or it is not a valid JSON.
+	 */
+	public CompiledTemplate get(String templateId, String template) throws InvalidTemplateException {
+		return get(templateId, template, true);
+	}
+
+	private CompiledTemplate get(String templateId, String template, boolean named) throws InvalidTemplateException {
+		if(templateId == null) throw new InvalidTemplateException("The template cannot be null");
+
+		Segment segment = segmentFor(templateId);
+		CompiledTemplate compiled = segment.get(templateId);
+		if(compiled != null) {
+			hits.increment();
+			return compiled;
+		}
+
+		misses.increment();
+
+		// The template is compiled outside the lock. If another thread added it in the meantime, that instance is used.
+		compiled = JsonTransformer.parseTemplate(template);
+		return segment.putIfAbsent(templateId, named?compiled.withName(templateId):compiled);
+	}
+
+	/**
+	 * Removes all the templates. The counters are not reset.
+	 */
+	public void clear() {
+		for(Segment segment : segments) segment.clear();
+	}
+
+	/**
+	 * @return the amount of templates currently in the cache.
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments) size += segment.size();
+		return size;
+	}
+
+	/**
+	 * @return the maximum amount of templates specified when the cache was created.
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return the amount of times a template was found in the cache.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the amount of times a template was not found in the cache and had to be compiled.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the amount of templates removed because the cache was full.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "TemplateCache(size=" + size() + ", maximumSize=" + maximumSize + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + ")";
+	}
+
+	private Segment segmentFor(String key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (segments.length - 1)];
+	}
+
+	/**
+	 * Part of the cache, with its own lock and LRU order.
+	 */
+	private class Segment {
+		private final Map<String, CompiledTemplate> entries;
+
+		Segment(final int capacity) {
+			this.entries = new LinkedHashMap<String, CompiledTemplate>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+					if(size() <= capacity) return false;
+
+					evictions.increment();
+					return true;
+				}
+			};
+		}
+
+		synchronized CompiledTemplate get(String key) {
+			return entries.get(key);
+		}
+
+		synchronized CompiledTemplate putIfAbsent(String key, CompiledTemplate template) {
+			CompiledTemplate existing = entries.get(key);
+			if(existing != null) return existing;
+
+			entries.put(key, template);
+			return template;
+		}
+
+		synchronized void clear() {
+			entries.clear();
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+	}
+}
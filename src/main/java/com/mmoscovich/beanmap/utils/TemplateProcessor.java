@@ -0,0 +1,279 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processor that applies a compiled template to each item received from the upstream publisher and publishes the results
+ * (see {@link CompiledTemplate#transform(Object)}), in the same order.
+ * <p>It honors the backpressure of the subscriber: no more items are requested from the upstream than the results requested by the subscriber
+ * (and never more than the parallelism). With an executor, up to <code>parallelism</code> items are transformed at the same time
+ * and the results are still published in order. Without it, each item is transformed by the thread that delivers it.</p>
+ * <p>When a required attribute is missing on an item, the {@link ErrorStrategy} decides whether the item is skipped, replaced
+ * by a placeholder or fails the stream. Any other error fails the stream: the upstream is cancelled and the subscriber
+ * receives an {@link ObjectTransformerException}. The errors of the upstream are forwarded at once (the results not published yet are discarded).</p>
+ * <p>A processor can be subscribed to a single publisher and it accepts a single subscriber.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public class TemplateProcessor implements Flow.Processor<Object, Object> {
+
+	/**
+	 * What to do with an item where a required attribute is missing ({@link MissingAttributeException}).
+	 */
+	public enum ErrorStrategy {
+		/** The item is discarded (and another one is requested from the upstream) */
+		SKIP,
+		/** The stream fails with the error */
+		FAIL,
+		/** The placeholder is published instead of the result */
+		PLACEHOLDER
+	}
+
+	/** Marks the skipped items */
+	private static final Object SKIPPED = new Object();
+
+	private final CompiledTemplate template;
+	private final Executor executor;
+	private final int parallelism;
+	private final ErrorStrategy errorStrategy;
+	private final Object placeholder;
+
+	/** Transformations in progress (or finished but not published yet), in order */
+	private final Queue<CompletableFuture<Object>> pending = new ConcurrentLinkedQueue<>();
+	/** Results requested by the subscriber and not published yet */
+	private final AtomicLong requested = new AtomicLong();
+	/** Items requested from the upstream and not received yet */
+	private final AtomicLong outstanding = new AtomicLong();
+	/** Serializes the drain loop (amount of pending drain calls) */
+	private final AtomicInteger wip = new AtomicInteger();
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+	private volatile Flow.Subscription upstream;
+	private volatile Flow.Subscriber<? super Object> downstream;
+	private volatile boolean upstreamDone;
+	private volatile Throwable error;
+	private volatile boolean cancelled;
+
+	/**
+	 * Creates a processor that transforms the items sequentially and fails on missing attributes.
+	 *
+	 * @param template the compiled template
+	 */
+	public TemplateProcessor(CompiledTemplate template) {
+		this(template, null, 1, ErrorStrategy.FAIL, null);
+	}
+
+	/**
+	 * Creates a processor.
+	 *
+	 * @param template the compiled template
+	 * @param executor the executor that transforms the items, or <code>null</code> to transform them in the thread that delivers them
+	 * @param parallelism the maximum amount of items transformed at the same time (ignored without executor)
+	 * @param errorStrategy what to do with the items where a required attribute is missing
+	 * @param placeholder the value published instead of those items with {@link ErrorStrategy#PLACEHOLDER}
+	 */
+	public TemplateProcessor(CompiledTemplate template, Executor executor, int parallelism, ErrorStrategy errorStrategy, Object placeholder) {
+		if(template == null) throw new IllegalArgumentException("The template cannot be null");
+		if(errorStrategy == null) throw new IllegalArgumentException("The error strategy cannot be null");
+		if(errorStrategy == ErrorStrategy.PLACEHOLDER && placeholder == null) throw new IllegalArgumentException("The placeholder cannot be null");
+		if(parallelism <= 0) throw new IllegalArgumentException("The parallelism must be positive");
+
+		this.template = template;
+		this.executor = executor;
+		this.parallelism = (executor != null)?parallelism:1;
+		this.errorStrategy = errorStrategy;
+		this.placeholder = placeholder;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super Object> subscriber) {
+		if(subscriber == null) throw new NullPointerException("The subscriber cannot be null");
+
+		if(!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override public void request(long n) {}
+				@Override public void cancel() {}
+			});
+			subscriber.onError(new IllegalStateException("The processor accepts a single subscriber"));
+			return;
+		}
+
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				if(n <= 0) {
+					error = new IllegalArgumentException("The amount of items requested must be positive");
+					cancelUpstream();
+				} else {
+					requested.getAndAccumulate(n, (current, added) -> (current + added < 0)?Long.MAX_VALUE:current + added);
+				}
+				drain();
+			}
+
+			@Override
+			public void cancel() {
+				cancelled = true;
+				cancelUpstream();
+				pending.clear();
+			}
+		});
+		downstream = subscriber;
+		drain();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		if(upstream != null || cancelled) {
+			subscription.cancel();
+			return;
+		}
+		upstream = subscription;
+		drain();
+	}
+
+	@Override
+	public void onNext(Object item) {
+		if(cancelled || upstreamDone) return;
+
+		CompletableFuture<Object> result;
+		if(executor != null) {
+			result = CompletableFuture.supplyAsync(() -> transform(item), executor);
+		} else {
+			result = new CompletableFuture<>();
+			try {
+				result.complete(transform(item));
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		}
+
+		// It is added before updating the outstanding items, so the drain never sees the item missing from both
+		pending.add(result);
+		outstanding.decrementAndGet();
+
+		if(executor != null) {
+			result.whenComplete((value, e) -> drain());
+		} else {
+			drain();
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		error = throwable;
+		upstreamDone = true;
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		upstreamDone = true;
+		drain();
+	}
+
+	/**
+	 * Transforms an item, applying the error strategy.
+	 *
+	 * @return the result, the placeholder or {@link #SKIPPED}
+	 * @throws UncheckedTransformerException if the stream must fail
+	 */
+	private Object transform(Object item) {
+		try {
+			return template.transform(item);
+		} catch (ObjectTransformerException e) {
+			if(e.getCause() instanceof MissingAttributeException) {
+				if(errorStrategy == ErrorStrategy.SKIP) return SKIPPED;
+				if(errorStrategy == ErrorStrategy.PLACEHOLDER) return placeholder;
+			}
+			throw new UncheckedTransformerException(e);
+		}
+	}
+
+	/**
+	 * Publishes the finished results (in order) while the subscriber requests them, requests more items from the upstream
+	 * and finishes the stream. Only one thread runs it at a time: the calls made meanwhile make that thread loop again.
+	 */
+	private void drain() {
+		if(wip.getAndIncrement() != 0) return;
+
+		int missed = 1;
+		do {
+			Flow.Subscriber<? super Object> subscriber = downstream;
+			if(subscriber != null && !cancelled) {
+				if(!emit(subscriber)) return;
+				requestUpstream();
+			}
+			missed = wip.addAndGet(-missed);
+		} while(missed != 0);
+	}
+
+	/**
+	 * Publishes the finished results and the end of the stream.
+	 *
+	 * @return <code>false</code> if the stream was finished
+	 */
+	private boolean emit(Flow.Subscriber<? super Object> subscriber) {
+		while(requested.get() > 0) {
+			if(error != null) break;
+
+			CompletableFuture<Object> head = pending.peek();
+			if(head == null || !head.isDone()) break;
+			pending.poll();
+
+			Object value;
+			try {
+				value = head.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				error = (cause instanceof UncheckedTransformerException)?((UncheckedTransformerException)cause).getCause():new ObjectTransformerException(cause);
+				cancelUpstream();
+				break;
+			}
+
+			if(value != SKIPPED) {
+				subscriber.onNext(value);
+				if(requested.get() != Long.MAX_VALUE) requested.decrementAndGet();
+			}
+		}
+
+		if(error != null) {
+			cancelled = true;
+			pending.clear();
+			subscriber.onError(error);
+			return false;
+		}
+		if(upstreamDone && pending.isEmpty()) {
+			cancelled = true;
+			subscriber.onComplete();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Requests items from the upstream until the items in progress reach the results requested (limited by the parallelism).
+	 */
+	private void requestUpstream() {
+		Flow.Subscription subscription = upstream;
+		if(subscription == null || upstreamDone) return;
+
+		long wanted = Math.min(parallelism, requested.get()) - outstanding.get() - pending.size();
+		if(wanted > 0) {
+			outstanding.addAndGet(wanted);
+			subscription.request(wanted);
+		}
+	}
+
+	private void cancelUpstream() {
+		Flow.Subscription subscription = upstream;
+		if(subscription != null) subscription.cancel();
+	}
+}
@@ -0,0 +1,75 @@
+package com.mmoscovich.beanmap.utils;
+
+/**
+ * Receives metrics of the transformations, so they can be reported to any metrics library (see {@link ObjectTransformer#setTransformListener(TransformListener)}).
+ * <p>All the methods have an empty default implementation, so a listener only needs to implement the events it uses.
+ * When no listener is registered ({@link #NO_OP}), the transformations do not measure anything.</p>
+ * <p>The methods are called by the threads that run the transformations, so they must be thread-safe and fast
+ * (eg. incrementing counters or recording into a histogram). The templates can be identified by instance or by {@link CompiledTemplate#getName()}.</p>
+ * <p>The sizes are measured in bytes when the JSON is read from (or written to) a byte stream and in chars otherwise.</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+public interface TransformListener {
+
+	/** Listener that ignores all the events */
+	TransformListener NO_OP = new TransformListener() {};
+
+	/**
+	 * Called after a template was applied successfully.
+	 * <p>For the JSON streaming methods, the time includes reading the input and writing the output.</p>
+	 *
+	 * @param template the template
+	 * @param records the amount of records transformed (the size of the input collection, or 1 if the input is a single element)
+	 * @param nanos the time it took, in nanoseconds
+	 */
+	default void transformCompleted(CompiledTemplate template, long records, long nanos) {}
+
+	/**
+	 * Called when a template could not be applied.
+	 *
+	 * @param template the template
+	 * @param error the cause of the error (eg. a {@link MissingAttributeException})
+	 * @param nanos the time until the error, in nanoseconds
+	 */
+	default void transformFailed(CompiledTemplate template, Throwable error, long nanos) {}
+
+	/**
+	 * Called when a required attribute was not found while applying a template.
+	 * <p>It is reported for each missing attribute, whatever the entry point: when the transformation fails (before {@link #transformFailed(CompiledTemplate, Throwable, long)}),
+	 * when the missing attributes are collected ({@link CompiledTemplate#tryTransform(Object)}) and when a lazy result is read ({@link CompiledTemplate#transformLazy(Object)}).</p>
+	 *
+	 * @param template the template
+	 * @param attributeName the path of the missing attribute
+	 */
+	default void missingAttribute(CompiledTemplate template, String attributeName) {}
+
+	/**
+	 * Called when an optional attribute was not found while applying a template, so the default value (or <code>null</code>) was used instead.
+	 * <p>It is reported by the values and String templates of the template. The lookups made outside a template
+	 * (eg. {@link EnhancedObjectNavigator} or {@link StringTemplate}) are not reported.</p>
+	 *
+	 * @param template the template
+	 * @param path the optional path
+	 */
+	default void optionalDefaultUsed(CompiledTemplate template, PropertyPath path) {}
+
+	/**
+	 * Called after the JSON input of a template was read.
+	 *
+	 * @param template the template
+	 * @param size the size of the input
+	 * @param nanos the time it took to parse it, in nanoseconds, or <code>-1</code> if it was parsed while being transformed (streaming)
+	 */
+	default void inputParsed(CompiledTemplate template, long size, long nanos) {}
+
+	/**
+	 * Called after the JSON result of a template was written.
+	 *
+	 * @param template the template
+	 * @param size the size of the output
+	 * @param nanos the time it took to serialize it, in nanoseconds, or <code>-1</code> if it was written while being transformed (streaming)
+	 */
+	default void outputWritten(CompiledTemplate template, long size, long nanos) {}
+}
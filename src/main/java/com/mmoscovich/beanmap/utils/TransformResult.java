@@ -0,0 +1,39 @@
+package com.mmoscovich.beanmap.utils;
+
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Result of a transformation that does not fail when required attributes are missing (see {@link CompiledTemplate#tryTransform(Object)}).
+ * <p>The missing attributes are written as <code>null</code> in the result and their paths are collected,
+ * in the order they were found (a path appears once per element where it is missing).</p>
+ *
+ * @author Martin Moscovich
+ *
+ */
+@ToString
+public class TransformResult {
+
+	/** The result object (Map or List) of applying the template */
+	@Getter
+	private final Object result;
+
+	/** The paths of the required attributes that were not found */
+	@Getter
+	private final List<String> missingAttributes;
+
+	TransformResult(Object result, List<String> missingAttributes) {
+		this.result = result;
+		this.missingAttributes = Collections.unmodifiableList(missingAttributes);
+	}
+
+	/**
+	 * @return <code>true</code> if all the required attributes were found (so the result is the same as a normal transformation).
+	 */
+	public boolean isComplete() {
+		return missingAttributes.isEmpty();
+	}
+}
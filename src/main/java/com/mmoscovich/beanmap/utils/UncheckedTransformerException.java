@@ -0,0 +1,25 @@
+package com.mmoscovich.beanmap.utils;
+
+/**
+ * Unchecked wrapper of an {@link ObjectTransformerException}, thrown where a checked exception cannot be used
+ * (eg. while consuming the lazy results of {@link JsonTransformer#transformRecords(CompiledTemplate, java.io.Reader, JsonLayout)}).
+ * 
+ * @author Martin Moscovich
+ *
+ */
+public class UncheckedTransformerException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public UncheckedTransformerException(ObjectTransformerException e) {
+		super(e.getMessage(), e);
+	}
+	
+	/**
+	 * @return the wrapped exception
+	 */
+	@Override
+	public ObjectTransformerException getCause() {
+		return (ObjectTransformerException) super.getCause();
+	}
+}
@@ -0,0 +1,80 @@
+package com.mmoscovich.beanmap.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.junit.Test;
+
+@Slf4j
+public class BatchTransformerTest {
+
+	private static final String TEMPLATE = "{\"name\": \"=nombre\", \"calle\": \"=direccion.calle\", \"edad\": \"=edad?\"}";
+
+	@Test
+	public void ndjson() throws IOException, ObjectTransformerException {
+		StringBuilder ndjson = new StringBuilder();
+		for(int i = 0; i < 500; i++) {
+			ndjson.append("{\"nombre\": \"Persona ").append(i).append("\", \"edad\": ").append(i % 90).append(", \"direccion\": {\"calle\": \"Calle ").append(i).append("\"}}\n");
+			if(i % 100 == 0) ndjson.append('\n');
+		}
+
+		StringWriter expected = new StringWriter();
+		CompiledTemplate template = JsonTransformer.compile(TEMPLATE);
+		JsonTransformer.transform(template, new StringReader(ndjson.toString()), expected, JsonLayout.NDJSON);
+
+		Path input = Files.createTempFile("batch", ".ndjson");
+		Path output = Files.createTempFile("batch", ".out");
+		try {
+			Files.write(input, ndjson.toString().getBytes(StandardCharsets.UTF_8));
+
+			// Small chunks, so there are many more chunks than threads
+			List<BatchProgress> reported = new ArrayList<>();
+			ForkJoinPool pool = new ForkJoinPool(3);
+			BatchProgress result = new BatchTransformer(template).withExecutor(pool).withChunkSize(1000).withProgressListener(reported::add).transform(input, output);
+			pool.shutdown();
+			log.info("{}", result);
+
+			assertEquals(expected.toString(), new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+			assertEquals(500, result.getRecords());
+			assertEquals(Files.size(input), result.getBytesRead());
+			assertEquals(Files.size(output), result.getBytesWritten());
+			assertEquals(1.0, result.getCompletion(), 0);
+			assertTrue(result.getChunks() > 10);
+			assertEquals(result.getChunks(), reported.size());
+
+			// A JSON array is transformed sequentially
+			Files.write(input, ("[" + ndjson.toString().trim().replaceAll("\n+", ",") + "]").getBytes(StandardCharsets.UTF_8));
+			result = new BatchTransformer(template).withLayout(JsonLayout.ARRAY).withChunkSize(1000).transform(input, output);
+			assertEquals(500, result.getRecords());
+			assertEquals("[" + expected.toString().trim().replace("\n", ",") + "]", new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+		} finally {
+			Files.delete(input);
+			Files.delete(output);
+		}
+	}
+
+	@Test(expected=InvalidInputException.class)
+	public void invalidLine() throws IOException, ObjectTransformerException {
+		Path input = Files.createTempFile("batch", ".ndjson");
+		Path output = Files.createTempFile("batch", ".out");
+		try {
+			Files.write(input, "{\"nombre\": \"Martin\", \"direccion\": {\"calle\": \"D Velez\"}}\n{\"nombre\": \n".getBytes(StandardCharsets.UTF_8));
+			new BatchTransformer(JsonTransformer.compile(TEMPLATE)).withChunkSize(10).transform(input, output);
+		} finally {
+			Files.delete(input);
+			Files.delete(output);
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package com.mmoscovich.beanmap.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@Slf4j
+public class CompiledTemplateTest {
+
+	ObjectMapper mapper = new ObjectMapper();
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void reuse() throws IOException, URISyntaxException, ObjectTransformerException {
+		String input = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input.json").toURI()), Charset.defaultCharset()));
+		String template = String.join("", Files.readAllLines(Paths.get(this.getClass().getResource("/json/template2.json").toURI()), Charset.defaultCharset()));
+
+		Map<String, Object> templateMap = mapper.readValue(template, Map.class);
+		CompiledTemplate compiled = ObjectTransformer.compile(templateMap);
+
+		// The template must not be modified by the compilation
+		assertEquals(mapper.readValue(template, Map.class), templateMap);
+
+		Object source = mapper.readValue(input, Object.class);
+		String first = mapper.writeValueAsString(compiled.transform(source));
+		String second = mapper.writeValueAsString(compiled.transform(source));
+
+		assertEquals(first, second);
+		assertEquals(first, mapper.writeValueAsString(ObjectTransformer.transform(templateMap, source)));
+		log.info("{}", first);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void nestedNamesUseTheDeclaringItem() throws IOException, URISyntaxException, ObjectTransformerException {
+		String input = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input-array.json").toURI()), Charset.defaultCharset()));
+
+		CompiledTemplate compiled = ObjectTransformer.compile(mapper.readValue("{\"direccion.nombre\": \"=nombre\", \"direccion.calle\": \"=\"}", Map.class));
+
+		assertEquals("[{\"direccion\":{\"nombre\":\"Martin\",\"calle\":\"D Velez\"}},{\"direccion\":{\"nombre\":\"Pedro\",\"calle\":\"Corrientes\"}}]",
+				mapper.writeValueAsString(compiled.transform(mapper.readValue(input, Object.class))));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void parallel() throws IOException, ObjectTransformerException {
+		CompiledTemplate compiled = ObjectTransformer.compile(mapper.readValue("{\"id\": \"=\", \"tags\": {\"_root\": \"items\", \"name\": \"=\"}}", Map.class));
+
+		List<Map<String, Object>> input = new ArrayList<>();
+		for(int i = 0; i < 1000; i++) {
+			Map<String, Object> item = new HashMap<>();
+			item.put("id", i);
+			item.put("items", Arrays.asList(Collections.singletonMap("name", "a" + i), Collections.singletonMap("name", "b" + i)));
+			input.add(item);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			assertEquals(compiled.transform(input), compiled.transform(input, pool, 10));
+			assertEquals(compiled.transform(input.subList(0, 5)), compiled.transform(input.subList(0, 5), pool, 10));
+
+			input.get(500).remove("id");
+			try {
+				compiled.transform(input, pool, 10);
+				fail("The missing attribute was not reported");
+			} catch(ObjectTransformerException e) {
+				assertTrue(e.getCause() instanceof MissingAttributeException);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void specialization() throws IOException, ObjectTransformerException {
+		CompiledTemplate compiled = ObjectTransformer.compile(mapper.readValue("{\"id\": \"=\", \"calle\": \"=address.street\", \"edad\": \"=age?\", \"texto\": \"${name}\", \"tipo\": \"persona\"}", Map.class));
+
+		Person person = new Person(1, "Martin", 30, Person.Status.OK, new Person.Address(2, "D Velez"));
+		Person subclass = new Person(3, "Pedro", 40, Person.Status.OK, new Person.Address(4, "Corrientes")) {};
+		Map<String, Object> map = new HashMap<>();
+		map.put("id", 5);
+		map.put("name", "Juana");
+		map.put("address", Collections.singletonMap("street", "Cabildo"));
+		List<Object> input = Arrays.asList(person, subclass, map);
+
+		Object expected = compiled.transform(input);
+		CompiledTemplate specialized = compiled.withSpecialization();
+		assertTrue(specialized.isSpecialized());
+		assertFalse(compiled.isSpecialized());
+		assertEquals(expected, specialized.transform(input));
+		assertEquals(expected, specialized.transform(input));
+		assertEquals(expected, specialized.transformLazy(input));
+		assertEquals(expected, compiled.transform(input));
+
+		try {
+			specialized.transform(new Person(6, "Luis", 20, Person.Status.OK, null));
+			fail("The missing attribute was not reported");
+		} catch(ObjectTransformerException e) {
+			assertTrue(e.getCause() instanceof MissingAttributeException);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void groupSchema() throws IOException, ObjectTransformerException {
+		Map<String, Object> template = mapper.readValue("{\"id\": \"=\", \"usuario\": \"=user.name\", \"pais\": \"=tenant.country?AR\", \"user.city\": \"=address.city\", "
+				+ "\"ordenes\": {\"_root\": \"order.items\", \"codigo\": \"=code\", \"cliente.nombre\": \"=user.name\"}, \"texto\": \"${user.name} (${id})\"}", Map.class);
+		GroupSchema schema = GroupSchema.of("user", "order", "tenant");
+		CompiledTemplate indexed = ObjectTransformer.compile(template, schema);
+		CompiledTemplate generic = ObjectTransformer.compile(template);
+
+		Map<String, Object> main = mapper.readValue("{\"id\": 7, \"address\": {\"city\": \"Rosario\"}, \"user\": {\"name\": \"Default\"}}", Map.class);
+		Object user = mapper.readValue("{\"name\": \"Martin\", \"city\": \"CABA\"}", Map.class);
+		Object order = mapper.readValue("{\"items\": [{\"code\": \"A\"}, {\"code\": \"B\"}]}", Map.class);
+
+		GroupDatasource mutable = new GroupDatasource(main);
+		mutable.add("user", user);
+		mutable.add("order", order);
+		GroupDatasource datasource = schema.datasource(main).set("user", user).set("order", order).build();
+
+		Object expected = generic.transform(mutable);
+		assertEquals("Martin", ((Map<String, Object>)expected).get("usuario"));
+		assertEquals("AR", ((Map<String, Object>)expected).get("pais"));
+		assertEquals(expected, indexed.transform(datasource));
+		assertEquals(expected, generic.transform(datasource));
+		assertEquals(expected, indexed.transform(mutable));
+		assertEquals(JsonTransformer.transform(generic, mutable), JsonTransformer.transform(indexed, datasource));
+
+		// A group that was not set is read from the default source
+		GroupDatasource withoutUser = schema.datasource(main).set("order", order).build();
+		assertEquals("Default", ((Map<String, Object>)indexed.transform(withoutUser)).get("usuario"));
+
+		try {
+			schema.datasource(main).set("other", user);
+			fail("The group is not part of the schema");
+		} catch(IllegalArgumentException e) {
+			log.info(e.getMessage());
+		}
+		try {
+			datasource.add("user", user);
+			fail("The datasource is immutable");
+		} catch(UnsupportedOperationException e) {
+			log.info(e.getMessage());
+		}
+	}
+
+	@Test(expected=InvalidTemplateException.class)
+	public void emptyTemplate() throws ObjectTransformerException {
+		ObjectTransformer.compile(null);
+	}
+
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void dynamicPropertyNames() throws IOException, ObjectTransformerException {
+		// The property names of the input are not parsed as paths
+		CompiledTemplate compiled = ObjectTransformer.compile(mapper.readValue("{\"_exclude\": \"telefono\"}", Map.class));
+		String input = "{\"direccion.calle\": \"D Velez\", \"titulo?\": \"Sr.\", \"ENTITY\": 1, \"telefono\": 1234}";
+		String expected = "{\"direccion.calle\":\"D Velez\",\"titulo?\":\"Sr.\",\"ENTITY\":1}";
+		
+		Object source = mapper.readValue(input, Object.class);
+		assertEquals(expected, mapper.writeValueAsString(compiled.transform(source)));
+		assertEquals(expected, mapper.writeValueAsString(compiled.transformLazy(source)));
+		assertEquals(expected, JsonTransformer.transform(compiled, input));
+	}
+
+	@Test
+	public void lazy() throws IOException, URISyntaxException, ObjectTransformerException {
+		String input = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input.json").toURI()), Charset.defaultCharset()));
+		String inputArray = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input-array.json").toURI()), Charset.defaultCharset()));
+		String template = String.join("", Files.readAllLines(Paths.get(this.getClass().getResource("/json/template2.json").toURI()), Charset.defaultCharset()));
+		String templateArray = String.join("", Files.readAllLines(Paths.get(this.getClass().getResource("/json/template-array.json").toURI()), Charset.defaultCharset()));
+
+		CompiledTemplate compiled = ObjectTransformer.compile(mapper.readValue(template, Map.class));
+		Object source = mapper.readValue(input, Object.class);
+		assertEquals(mapper.writeValueAsString(compiled.transform(source)), mapper.writeValueAsString(compiled.transformLazy(source)));
+
+		compiled = ObjectTransformer.compile(mapper.readValue(templateArray, Map.class));
+		source = mapper.readValue(inputArray, Object.class);
+		assertEquals(compiled.transform(source), compiled.transformLazy(source));
+
+		compiled = ObjectTransformer.compile(mapper.readValue("{\"_exclude\": \"telefono\", \"nombre\": \"${nombre} ${apellido?}\", \"extra\": 1}", Map.class));
+		assertEquals(mapper.writeValueAsString(compiled.transform(source)), mapper.writeValueAsString(compiled.transformLazy(source)));
+
+		// The values that are not read are not evaluated
+		Map<String, Object> person = new HashMap<>();
+		person.put("name", "Martin");
+		Map<String, Object> result = (Map<String, Object>)ObjectTransformer.transformLazy(mapper.readValue("{\"name\": \"=name\", \"street\": \"=address.street\"}", Map.class), person);
+		assertEquals(Arrays.asList("name", "street"), new ArrayList<>(result.keySet()));
+		assertEquals("Martin", result.get("name"));
+		try {
+			result.get("street");
+			fail("The missing attribute must be reported when it is read");
+		} catch(UncheckedTransformerException e) {
+			assertTrue(e.getCause().getCause() instanceof MissingAttributeException);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void tryTransform() throws IOException, ObjectTransformerException {
+		Map<String, Object> template = mapper.readValue("{\"name\": \"=name\", \"street\": \"=address.street\", \"label\": \"${name} (${address.city})\"}", Map.class);
+
+		Map<String, Object> complete = new HashMap<>();
+		complete.put("name", "Martin");
+		complete.put("address", Collections.singletonMap("street", "Cool St"));
+		Map<String, Object> incomplete = Collections.singletonMap("name", "Pedro");
+
+		TransformResult result = ObjectTransformer.tryTransform(template, Arrays.asList(complete, incomplete));
+		assertEquals(Arrays.asList("address.city", "address.street", "address.city"), result.getMissingAttributes());
+		assertEquals(mapper.readValue("[{\"name\":\"Martin\",\"street\":\"Cool St\",\"label\":\"Martin ()\"},{\"name\":\"Pedro\",\"street\":null,\"label\":\"Pedro ()\"}]", List.class), result.getResult());
+
+		result = ObjectTransformer.compile(template).tryTransform(Collections.singletonMap("name", "Martin"));
+		assertEquals(2, result.getMissingAttributes().size());
+
+		template.remove("label");
+		result = ObjectTransformer.tryTransform(template, complete);
+		assertTrue(result.isComplete());
+		assertEquals(ObjectTransformer.transform(template, complete), result.getResult());
+	}
+}
@@ -1,17 +1,32 @@
 package com.mmoscovich.beanmap.utils;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import lombok.extern.slf4j.Slf4j;
 
 import org.junit.Test;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 @Slf4j
 public class JsonTemplateTest {
@@ -39,5 +54,207 @@ public class JsonTemplateTest {
 		log.info("{}", JsonTransformer.selectFields(input, Arrays.asList("respuesta.nombre", "respuesta.telefono", "respuesta.direccion.calle", "respuesta.contactos.nombre")));
 		
 	}
+	
+	@Test
+	public void streaming() throws IOException, URISyntaxException, InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		String input = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input.json").toURI()), Charset.defaultCharset()));
+		String inputArray = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input-array.json").toURI()), Charset.defaultCharset()));
+		String template2 = String.join("", Files.readAllLines(Paths.get(this.getClass().getResource("/json/template2.json").toURI()), Charset.defaultCharset()));
+		String templateArray = String.join("", Files.readAllLines(Paths.get(this.getClass().getResource("/json/template-array.json").toURI()), Charset.defaultCharset()));
+		
+		StringWriter output = new StringWriter();
+		JsonTransformer.transform(template2, new StringReader(input), output);
+		assertEquals(mapper.writeValueAsString(JsonTransformer.transformToObject(template2, input)), output.toString());
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonTransformer.transform(templateArray, new ByteArrayInputStream(inputArray.getBytes(StandardCharsets.UTF_8)), bytes);
+		assertEquals(mapper.writeValueAsString(JsonTransformer.transformToObject(templateArray, inputArray)), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void objectOutput() throws IOException, URISyntaxException, InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		String input = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input.json").toURI()), Charset.defaultCharset()));
+		String template2 = String.join("", Files.readAllLines(Paths.get(this.getClass().getResource("/json/template2.json").toURI()), Charset.defaultCharset()));
+		Object source = mapper.readValue(input, Object.class);
+		String expected = mapper.writeValueAsString(JsonTransformer.transformToObject(template2, source));
+		
+		assertEquals(expected, JsonTransformer.transform(template2, source));
+		
+		StringWriter output = new StringWriter();
+		JsonTransformer.transform(template2, source, output);
+		assertEquals(expected, output.toString());
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonTransformer.transform(template2, source, bytes);
+		assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		
+		output = new StringWriter();
+		try (JsonGenerator generator = new JsonFactory().createGenerator(output)) {
+			generator.writeStartObject();
+			generator.writeFieldName("result");
+			JsonTransformer.transform(JsonTransformer.compile(template2), source, generator);
+			generator.writeEndObject();
+		}
+		assertEquals("{\"result\":" + expected + "}", output.toString());
+	}
+	
+	@Test
+	public void pruned() throws IOException, URISyntaxException, InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		String input = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input.json").toURI()), Charset.defaultCharset()));
+		String inputArray = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input-array.json").toURI()), Charset.defaultCharset()));
+		List<String> templates = Arrays.asList(
+				String.join("", Files.readAllLines(Paths.get(this.getClass().getResource("/json/template2.json").toURI()), Charset.defaultCharset())),
+				"{\"_exclude\": \"nombre\", \"calle\": \"=direccion.calle\"}",
+				"{\"street\": \"=direccion.calle\", \"address\": \"=direccion\", \"self\": \"=ENTITY\"}");
+		
+		// The properties that are not referenced are skipped, but the result must be the same as with the whole input
+		for(String template : templates) {
+			for(String json : Arrays.asList(input, inputArray)) {
+				Object expected;
+				try {
+					expected = JsonTransformer.transformToObject(template, mapper.readValue(json, Object.class));
+				} catch(ObjectTransformerException e) {
+					continue;
+				}
+				assertEquals(expected, JsonTransformer.transformToObject(template, json));
+				assertEquals(mapper.writeValueAsString(expected), JsonTransformer.transform(template, json));
+			}
+		}
+	}
+	
+	@Test
+	public void binaryFormats() throws IOException, URISyntaxException, InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		String input = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input.json").toURI()), Charset.defaultCharset()));
+		String template2 = String.join("", Files.readAllLines(Paths.get(this.getClass().getResource("/json/template2.json").toURI()), Charset.defaultCharset()));
+		CompiledTemplate compiled = JsonTransformer.compile(template2);
+		Object source = mapper.readValue(input, Object.class);
+		Object expected = JsonTransformer.transformToObject(template2, source);
+		
+		ObjectMapper smile = new ObjectMapper(new SmileFactory());
+		ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+		byte[] smileInput = smile.writeValueAsBytes(source);
+		
+		// Smile to CBOR, without text JSON
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonTransformer.transform(compiled, new ByteArrayInputStream(smileInput), new SmileFactory(), bytes, new CBORFactory());
+		assertEquals(expected, cbor.readValue(bytes.toByteArray(), Object.class));
+		
+		assertEquals(expected, JsonTransformer.transformToObject(compiled, new ByteArrayInputStream(smileInput), new SmileFactory()));
+		
+		bytes = new ByteArrayOutputStream();
+		JsonTransformer.transform(compiled, source, bytes, new SmileFactory());
+		assertEquals(expected, smile.readValue(bytes.toByteArray(), Object.class));
+		
+		List<String> fields = Arrays.asList("respuesta.nombre", "respuesta.direccion.calle", "respuesta.contactos.nombre");
+		bytes = new ByteArrayOutputStream();
+		JsonTransformer.selectFields(FieldProjection.compile(fields), new ByteArrayInputStream(smileInput), new SmileFactory(), bytes, null);
+		assertEquals(JsonTransformer.selectFields(input, fields), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void projection() throws IOException, URISyntaxException, InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		String input = String.join("\n", Files.readAllLines(Paths.get(this.getClass().getResource("/json/input.json").toURI()), Charset.defaultCharset()));
+		List<String> fields = Arrays.asList("respuesta.nombre", "respuesta.telefono", "respuesta.direccion.calle", "respuesta.contactos.nombre");
+		
+		Object expected = JsonTransformer.selectFields(mapper.readValue(input, Object.class), fields);
+		assertEquals(expected, mapper.readValue(JsonTransformer.selectFields(input, fields), Object.class));
+		
+		StringWriter output = new StringWriter();
+		JsonTransformer.selectFields(FieldProjection.compile(fields), new StringReader(input), output);
+		assertEquals(expected, mapper.readValue(output.toString(), Object.class));
+	}
+	
+	@Test
+	public void projectionRepeatedKeys() throws IOException, InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		String input = "{\"nombre\": \"Martin\", \"direccion\": {\"calle\": \"D Velez\"}, \"nombre\": \"Pedro\", \"direccion\": {\"calle\": \"Corrientes\", \"numero\": 10}}";
+		List<String> fields = Arrays.asList("nombre", "direccion.calle");
+		
+		// The last value wins, as when the document is bound to a Map
+		Object expected = JsonTransformer.selectFields(mapper.readValue(input, Object.class), fields);
+		assertEquals(expected, mapper.readValue(JsonTransformer.selectFields(input, fields), Object.class));
+		assertEquals("{\"nombre\":\"Pedro\",\"direccion\":{\"calle\":\"Corrientes\"}}", JsonTransformer.selectFields(input, fields));
+		
+		// Both overloads write the simple fields in the order of the list, followed by the nested ones
+		fields = Arrays.asList("direccion.calle", "numero", "nombre");
+		input = "{\"nombre\": \"Martin\", \"numero\": 10, \"direccion\": {\"calle\": \"D Velez\"}}";
+		expected = JsonTransformer.selectFields(mapper.readValue(input, Object.class), fields);
+		assertEquals(mapper.writeValueAsString(expected), JsonTransformer.selectFields(input, fields));
+		assertEquals("{\"numero\":10,\"nombre\":\"Martin\",\"direccion\":{\"calle\":\"D Velez\"}}", JsonTransformer.selectFields(input, fields));
+	}
+	
+	@Test(expected=ObjectTransformerException.class)
+	public void projectionMissingField() throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		JsonTransformer.selectFields("{\"nombre\": \"Martin\"}", Arrays.asList("apellido"));
+	}
+	
+	@Test
+	public void records() throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		String template = "{\"name\": \"=nombre\", \"calle\": \"=direccion.calle\"}";
+		String ndjson = "{\"nombre\": \"Martin\", \"direccion\": {\"calle\": \"D Velez\"}}\n\n{\"nombre\": \"Pedro\", \"direccion\": {\"calle\": \"Corrientes\"}}\n";
+		String array = "[" + ndjson.trim().replace("\n\n", ",") + "]";
+		
+		StringWriter output = new StringWriter();
+		JsonTransformer.transform(template, new StringReader(ndjson), output, JsonLayout.NDJSON);
+		assertEquals("{\"name\":\"Martin\",\"calle\":\"D Velez\"}\n{\"name\":\"Pedro\",\"calle\":\"Corrientes\"}\n", output.toString());
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonTransformer.transform(template, new ByteArrayInputStream(array.getBytes(StandardCharsets.UTF_8)), bytes, JsonLayout.ARRAY);
+		assertEquals(JsonTransformer.transform(template, array), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		
+		CompiledTemplate compiled = JsonTransformer.compile(template);
+		try(Stream<Object> results = JsonTransformer.transformRecords(compiled, new StringReader(ndjson), JsonLayout.NDJSON)) {
+			assertEquals(JsonTransformer.transformToObject(template, array), results.collect(Collectors.toList()));
+		}
+		try(Stream<Object> results = JsonTransformer.transformRecords(compiled, new StringReader(array), JsonLayout.ARRAY)) {
+			assertEquals(1, results.limit(1).count());
+		}
+	}
+	
+	@Test
+	public void transformAll() throws IOException, InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		CompiledTemplate template = JsonTransformer.compile("{\"name\": \"=nombre\", \"calle\": \"=direccion.calle\"}");
+		List<String> jsons = Arrays.asList("{\"nombre\": \"Martin\", \"direccion\": {\"calle\": \"D Velez\"}}", "[{\"nombre\": \"Pedro\", \"direccion\": {\"calle\": \"Corrientes\"}}]");
+		String expected = JsonTransformer.transform(template, jsons.get(0)) + "\n" + JsonTransformer.transform(template, jsons.get(1)) + "\n";
+		
+		StringWriter output = new StringWriter();
+		assertEquals(2, JsonTransformer.transformAll(template, jsons, output, JsonLayout.NDJSON));
+		assertEquals(expected, output.toString());
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		List<byte[]> encoded = jsons.stream().map(json -> json.getBytes(StandardCharsets.UTF_8)).collect(Collectors.toList());
+		JsonTransformer.transformAll(template, encoded, bytes, JsonLayout.ARRAY);
+		assertEquals("[" + expected.trim().replace("\n", ",") + "]", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		
+		List<Object> inputs = Arrays.asList(mapper.readValue(jsons.get(0), Object.class), mapper.readValue(jsons.get(1), Object.class));
+		output = new StringWriter();
+		JsonTransformer.transformAllObjects(template, inputs, output, JsonLayout.NDJSON);
+		assertEquals(expected, output.toString());
+		
+		try {
+			JsonTransformer.transformAll(template, Arrays.asList(jsons.get(0), "{\"nombre\": "), new StringWriter(), JsonLayout.ARRAY);
+			fail("The second document is invalid");
+		} catch(InvalidInputException e) {
+			assertEquals("The input at index 1 could not be parsed", e.getMessage());
+		}
+		
+		try {
+			JsonTransformer.transformAll(template, Arrays.asList(jsons.get(0), null), new StringWriter(), JsonLayout.ARRAY);
+			fail("The second document is null");
+		} catch(InvalidInputException e) {
+			assertEquals("The input at index 1 is null", e.getMessage());
+		}
+	}
+	
+	@Test(expected=UncheckedTransformerException.class)
+	public void recordsNotArray() throws InvalidTemplateException, ObjectTransformerException {
+		try(Stream<Object> results = JsonTransformer.transformRecords(JsonTransformer.compile("{\"nombre\": \"=\"}"), new StringReader("{\"nombre\": \"Martin\"}"), JsonLayout.ARRAY)) {
+			results.count();
+		}
+	}
+	
+	@Test(expected=InvalidInputException.class)
+	public void streamingInvalidInput() throws InvalidTemplateException, InvalidInputException, ObjectTransformerException {
+		JsonTransformer.transform("{\"nombre\": \"=\"}", "{\"nombre\": ");
+	}
 
 }
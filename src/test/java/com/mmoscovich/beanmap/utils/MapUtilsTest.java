@@ -1,12 +1,27 @@
 package com.mmoscovich.beanmap.utils;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
 
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
 import org.junit.Test;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import com.mmoscovich.beanmap.utils.Person.Address;
 
 @Slf4j
@@ -32,4 +47,125 @@ public class MapUtilsTest {
 		log.info("{}",MapUtils.flattenMap(m2, true));
 	}
 
+	@Test
+	public void flatten() {
+		Map<String, Object> address = new HashMap<String, Object>();
+		address.put("street", "Cool St");
+		address.put("numbers", Arrays.asList(1, 2));
+		Map<String, Object> person = new HashMap<String, Object>();
+		person.put("name", "Martin");
+		person.put("address", address);
+		person.put("job", new Address(5L, "Other St"));
+		Map<String, Object> m = new HashMap<String, Object>();
+		m.put("person", person);
+		m.put("id", 2);
+		
+		Map<String, Object> flat = MapUtils.flattenMap(m, true);
+		assertEquals(6, flat.size());
+		assertEquals("Cool St", flat.get("person.address.street"));
+		assertEquals(Arrays.asList(1, 2), flat.get("person.address.numbers"));
+		assertEquals("Other St", flat.get("person.job.street"));
+		assertEquals(5L, ((Number)flat.get("person.job.id")).longValue());
+		
+		Map<String, Object> collected = new HashMap<String, Object>();
+		MapUtils.flattenMap(m, false, collected::put);
+		assertEquals(MapUtils.flattenMap(m), collected);
+		
+		m.remove("person");
+		person.remove("job");
+		m.put("person", person);
+		assertEquals(m, MapUtils.unflattenMap(MapUtils.flattenMap(m)));
+		
+		Properties properties = MapUtils.mapToProperties(m);
+		assertEquals("Cool St", properties.getProperty("person.address.street"));
+		assertEquals("2", MapUtils.propertiesToMap(properties).get("id"));
+		assertEquals("Martin", ((Map<?, ?>)MapUtils.propertiesToMap(properties).get("person")).get("name"));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void unflattenConflict() {
+		Map<String, Object> flat = new LinkedHashMap<String, Object>();
+		flat.put("person", "Martin");
+		flat.put("person.name", "Martin");
+		MapUtils.unflattenMap(flat);
+	}
+	
+	@Test
+	public void asMap() {
+		Person p = new Person(2L, "Martin", 35, Person.Status.OK, new Address(5L, "Cool St"));
+		Map<String, Object> view = MapUtils.asMap(p);
+		
+		assertEquals(MapUtils.beanToMap(p).keySet(), view.keySet());
+		assertEquals("Martin", view.get("name"));
+		assertEquals(Person.Status.OK, view.get("status"));
+		assertEquals("Cool St", ((Map<?, ?>)view.get("address")).get("street"));
+		assertFalse(view.containsKey("class"));
+		assertNull(view.get("nickname"));
+		
+		// The view is backed by the bean
+		p.getAddress().setStreet("Other St");
+		assertEquals("Other St", ((Map<?, ?>)view.get("address")).get("street"));
+		
+		assertEquals("Other St", ObjectNavigator.findValue(view, "address.street"));
+		
+		List<?> people = (List<?>)BeanMapView.wrap(Arrays.asList(p));
+		assertEquals("Martin", ((Map<?, ?>)people.get(0)).get("name"));
+	}
+	
+	@Test
+	public void beanToFlatMap() {
+		Person p = new Person(2L, "Martin", 35, Person.Status.OK, new Address(5L, "Cool St"));
+		Map<String, Object> flat = MapUtils.beanToFlatMap(p);
+		
+		assertEquals(MapUtils.flattenMap(MapUtils.beanToMap(p)).keySet(), flat.keySet());
+		assertEquals("OK", flat.get("status"));
+		assertEquals("Cool St", flat.get("address.street"));
+		assertEquals(5L, flat.get("address.id"));
+		
+		p.setAddress(null);
+		assertNull(MapUtils.beanToFlatMap(p).get("address"));
+	}
+	
+	@Test
+	public void beanToFlatMapValueTypes() {
+		Account account = new Account();
+		account.setId(UUID.fromString("3f2b8c1e-5d4a-4b7e-9c61-2a9d0e7f4b15"));
+		account.setLocale(new Locale("es", "AR"));
+		account.setAddresses(Arrays.asList(new Address(5L, "Cool St"), new Address(6L, "Other St")));
+		account.setCredentials(new Credentials("martin", "secret"));
+		Map<String, Object> flat = MapUtils.beanToFlatMap(account);
+		
+		assertEquals(MapUtils.flattenMap(MapUtils.beanToMap(account)), flat);
+		assertEquals("3f2b8c1e-5d4a-4b7e-9c61-2a9d0e7f4b15", flat.get("id"));
+		assertEquals("es_AR", flat.get("locale"));
+		assertEquals("Cool St", ((Map<?, ?>)((List<?>)flat.get("addresses")).get(0)).get("street"));
+		assertEquals("martin", flat.get("credentials.login"));
+		assertFalse(flat.containsKey("credentials.password"));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void beanToFlatMapCycle() {
+		Map<String, Object> m = new HashMap<String, Object>();
+		m.put("person", new Person());
+		m.put("self", m);
+		MapUtils.beanToFlatMap(m);
+	}
+	
+	@Data
+	public static class Account {
+		private UUID id;
+		private Locale locale;
+		private List<Address> addresses;
+		private Credentials credentials;
+	}
+	
+	@AllArgsConstructor
+	@Data
+	public static class Credentials {
+		@JsonProperty("login")
+		private String user;
+		@JsonIgnore
+		private String password;
+	}
+	
 }
@@ -0,0 +1,99 @@
+package com.mmoscovich.beanmap.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmoscovich.beanmap.utils.Person.Address;
+
+public class ObjectNavigatorTest {
+
+	@Test
+	public void parsePath() {
+		PropertyPath path = PropertyPath.parse("person.title?Mr.");
+		assertEquals(2, path.size());
+		assertEquals("person", path.getSegment(0));
+		assertEquals("title", path.getSegment(1));
+		assertTrue(path.isOptional());
+		assertEquals("Mr.", path.getDefaultValue());
+		assertFalse(path.isEntity());
+		
+		assertTrue(PropertyPath.parse("ENTITY").isEntity());
+		assertTrue(PropertyPath.parse("=?").isEntity());
+		assertNull(PropertyPath.parse("name?").getDefaultValue());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void invalidPath() {
+		PropertyPath.parse("?default");
+	}
+
+	@Test
+	public void findValue() {
+		Person p = new Person();
+		p.setName("Martin");
+		p.setAddress(new Address(5L, "Cool St"));
+		Map<String, Object> m = new HashMap<String, Object>();
+		m.put("person", p);
+		
+		PropertyPath street = PropertyPath.parse("person.address.street");
+		assertEquals("Cool St", ObjectNavigator.findValue(m, street));
+		assertEquals("Cool St", EnhancedObjectNavigator.findValue(m, street));
+		assertNull(ObjectNavigator.findValue(m, PropertyPath.parse("person.name.length")));
+		assertEquals("none", EnhancedObjectNavigator.findValue(m, PropertyPath.parse("person.title?none")));
+		assertSame(m, EnhancedObjectNavigator.findValue(m, PropertyPath.parse("ENTITY")));
+	}
+
+	@Test
+	public void jsonNode() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+		String json = "{\"person\":{\"name\":\"Martin\",\"age\":35,\"title\":null,\"phones\":[{\"number\":\"555\"},{\"number\":\"556\"}]}}";
+		JsonNode node = mapper.readTree(json);
+		
+		assertEquals("Martin", ObjectNavigator.findValue(node, "person.name"));
+		assertEquals(35, (int)ObjectNavigator.findValue(node, "person.age"));
+		assertNull(ObjectNavigator.findValue(node, "person.title"));
+		assertNull(ObjectNavigator.findValue(node, "person.name.length"));
+		assertEquals(Arrays.asList("name", "age", "title", "phones"), new ArrayList<>(ObjectNavigator.getProperties(node.get("person"))));
+		
+		List<?> phones = ObjectNavigator.findValue(node, "person.phones");
+		assertEquals(2, phones.size());
+		assertEquals("556", ObjectNavigator.findValue(phones.get(1), "number"));
+		
+		String template = "{\"_root\":\"person\",\"name\":\"=name\",\"phones\":{\"_root\":\"phones\",\"n\":\"=number\"}}";
+		assertEquals(JsonTransformer.transformToObject(template, mapper.readValue(json, Object.class)), JsonTransformer.transformToObject(template, node));
+		assertEquals(JsonTransformer.transform(template, json), JsonTransformer.transform(template, node));
+	}
+
+	@Test
+	public void hasProperty() {
+		Person p = new Person();
+		Map<String, Object> m = new HashMap<String, Object>();
+		m.put("person", null);
+		
+		assertTrue(ObjectNavigator.hasProperty(p, "name"));
+		assertFalse(ObjectNavigator.hasProperty(p, "nickname"));
+		assertFalse(ObjectNavigator.hasProperty(p, "nickname[0]"));
+		assertTrue(ObjectNavigator.hasProperty(m, "person"));
+		assertFalse(ObjectNavigator.hasProperty(m, "name"));
+		assertFalse(ObjectNavigator.hasProperty(null, "name"));
+		assertNull(ObjectNavigator.getSimpleFieldValue(p, "nickname[0]"));
+	}
+
+	@Test(expected=MissingAttributeException.class)
+	public void missingValue() {
+		EnhancedObjectNavigator.findValue(new Person(), PropertyPath.parse("address.street"));
+	}
+}
@@ -1,5 +1,10 @@
 package com.mmoscovich.beanmap.utils;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +26,31 @@ public class StringTemplateTest {
 		log.info(StringTemplate.replace("Probando ${=}!", m));
 	}
 	
+	@Test
+	public void compiled() throws IOException {
+		Map<String, Object> m =  new HashMap<String, Object>();
+		m.put("nombre", "Martin");
+		m.put("direccion", Collections.singletonMap("calle", "D Velez"));
+		
+		CompiledStringTemplate template = CompiledStringTemplate.compile("${nombre} vive en ${direccion.calle}${direccion.altura?} (${titulo?Sr.}) $${nombre}");
+		assertEquals("Martin vive en D Velez (Sr.) ${nombre}", template.render(m));
+		assertEquals(StringTemplate.replace(template.toString(), m), template.render(m));
+		
+		StringWriter output = new StringWriter();
+		template.renderTo(m, output);
+		assertEquals(template.render(m), output.toString());
+	}
+	
+	@Test(expected=MissingAttributeException.class)
+	public void missing() {
+		CompiledStringTemplate.compile("Hola ${nombre}").render(Collections.emptyMap());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void emptyKey() {
+		CompiledStringTemplate.compile("Hola ${}");
+	}
+	
 	
 
 }
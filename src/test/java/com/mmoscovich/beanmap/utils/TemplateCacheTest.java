@@ -0,0 +1,48 @@
+package com.mmoscovich.beanmap.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.junit.Test;
+
+@Slf4j
+public class TemplateCacheTest {
+
+	@Test
+	public void counters() throws InvalidTemplateException {
+		TemplateCache cache = new TemplateCache(1);
+		
+		CompiledTemplate first = cache.get("{\"a\": \"=\"}");
+		assertSame(first, cache.get("{\"a\": \"=\"}"));
+		cache.get("{\"b\": \"=\"}");
+		cache.get("people", "{\"c\": \"=\"}");
+		
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+		assertEquals(2, cache.getEvictionCount());
+		log.info("{}", cache);
+	}
+
+	@Test
+	public void enabledInTransformer() throws ObjectTransformerException {
+		TemplateCache cache = new TemplateCache(10);
+		JsonTransformer.setTemplateCache(cache);
+		try {
+			for(int i = 0; i < 3; i++) {
+				assertEquals("{\"nombre\":\"Martin\"}", JsonTransformer.transform("{\"nombre\": \"=\"}", "{\"nombre\": \"Martin\", \"edad\": 30}"));
+			}
+			assertEquals(2, cache.getHitCount());
+			assertEquals(1, cache.getMissCount());
+		} finally {
+			JsonTransformer.setTemplateCache(null);
+		}
+	}
+
+	@Test(expected=InvalidTemplateException.class)
+	public void invalidTemplate() throws InvalidTemplateException {
+		new TemplateCache(10).get("{not json");
+	}
+}
@@ -0,0 +1,179 @@
+package com.mmoscovich.beanmap.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.mmoscovich.beanmap.utils.TemplateProcessor.ErrorStrategy;
+
+public class TemplateProcessorTest {
+
+	@Test
+	public void backpressure() throws Exception {
+		ListPublisher publisher = new ListPublisher(people(10));
+		TemplateProcessor processor = new TemplateProcessor(JsonTransformer.compile("{\"name\": \"=nombre\"}"));
+		publisher.subscribe(processor);
+
+		CollectingSubscriber subscriber = new CollectingSubscriber();
+		processor.subscribe(subscriber);
+
+		subscriber.subscription.request(3);
+		assertEquals(3, subscriber.items.size());
+		assertTrue(publisher.requested.get() <= 4);
+		assertEquals(Collections.singletonMap("name", "Persona 2"), subscriber.items.get(2));
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+		assertEquals(10, subscriber.items.size());
+		assertEquals(null, subscriber.error);
+	}
+
+	@Test
+	public void parallel() throws Exception {
+		List<Object> people = people(200);
+		CompiledTemplate template = JsonTransformer.compile("{\"name\": \"=nombre\", \"label\": \"${nombre} (${edad})\"}");
+
+		ListPublisher publisher = new ListPublisher(people);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		TemplateProcessor processor = new TemplateProcessor(template, pool, 3, ErrorStrategy.FAIL, null);
+		publisher.subscribe(processor);
+
+		CollectingSubscriber subscriber = new CollectingSubscriber();
+		processor.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+		pool.shutdown();
+		assertEquals(null, subscriber.error);
+		assertEquals(template.transform(people), subscriber.items);
+		assertTrue(publisher.maxInFlight.get() <= 3);
+	}
+
+	@Test
+	public void errorStrategies() throws Exception {
+		List<Object> people = people(4);
+		((Map<?, ?>)people.get(1)).remove("nombre");
+		CompiledTemplate template = JsonTransformer.compile("{\"name\": \"=nombre\"}");
+
+		CollectingSubscriber subscriber = run(new TemplateProcessor(template, null, 1, ErrorStrategy.SKIP, null), people);
+		assertEquals(3, subscriber.items.size());
+		assertEquals(null, subscriber.error);
+
+		subscriber = run(new TemplateProcessor(template, null, 1, ErrorStrategy.PLACEHOLDER, "missing"), people);
+		assertEquals("missing", subscriber.items.get(1));
+		assertEquals(4, subscriber.items.size());
+
+		ListPublisher publisher = new ListPublisher(people);
+		subscriber = run(new TemplateProcessor(template), publisher);
+		assertEquals(1, subscriber.items.size());
+		assertTrue(subscriber.error instanceof ObjectTransformerException);
+		assertTrue(subscriber.error.getCause() instanceof MissingAttributeException);
+		assertTrue(publisher.cancelled);
+	}
+
+	private static CollectingSubscriber run(TemplateProcessor processor, List<Object> items) throws InterruptedException {
+		return run(processor, new ListPublisher(items));
+	}
+
+	private static CollectingSubscriber run(TemplateProcessor processor, ListPublisher publisher) throws InterruptedException {
+		publisher.subscribe(processor);
+		CollectingSubscriber subscriber = new CollectingSubscriber();
+		processor.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+		return subscriber;
+	}
+
+	private static List<Object> people(int amount) {
+		List<Object> people = new ArrayList<>();
+		for(int i = 0; i < amount; i++) {
+			Map<String, Object> person = new HashMap<>();
+			person.put("nombre", "Persona " + i);
+			person.put("edad", i);
+			people.add(person);
+		}
+		return people;
+	}
+
+	/**
+	 * Publishes the items of a list synchronously when they are requested (without recursion).
+	 */
+	private static class ListPublisher implements Flow.Publisher<Object> {
+		private final List<Object> items;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+		private final AtomicInteger wip = new AtomicInteger();
+		private int next;
+		private volatile boolean cancelled;
+
+		ListPublisher(List<Object> items) {
+			this.items = items;
+		}
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super Object> subscriber) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+					requested.addAndGet(n);
+					maxInFlight.accumulateAndGet((int)Math.min(requested.get() - next, Integer.MAX_VALUE), Math::max);
+					if(wip.getAndIncrement() != 0) return;
+					do {
+						while(!cancelled && next < requested.get() && next < items.size()) {
+							subscriber.onNext(items.get(next++));
+						}
+						if(!cancelled && next == items.size()) {
+							cancelled = true;
+							subscriber.onComplete();
+						}
+					} while(wip.decrementAndGet() != 0);
+				}
+
+				@Override
+				public void cancel() {
+					cancelled = true;
+				}
+			});
+		}
+	}
+
+	private static class CollectingSubscriber implements Flow.Subscriber<Object> {
+		private final List<Object> items = Collections.synchronizedList(new ArrayList<>());
+		private final CountDownLatch done = new CountDownLatch(1);
+		private Flow.Subscription subscription;
+		private volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(Object item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+	}
+}
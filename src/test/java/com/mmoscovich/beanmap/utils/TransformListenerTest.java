@@ -0,0 +1,136 @@
+package com.mmoscovich.beanmap.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TransformListenerTest {
+	
+	private static final String TEMPLATE = "{\"name\": \"=nombre\", \"title\": \"=titulo?Sr.\"}";
+	private static final String INPUT = "[{\"nombre\": \"Martin\"}, {\"nombre\": \"Pedro\", \"titulo\": \"Dr.\"}]";
+	
+	private static class CountingListener implements TransformListener {
+		AtomicLong completed = new AtomicLong();
+		AtomicLong records = new AtomicLong();
+		AtomicLong defaults = new AtomicLong();
+		AtomicLong inputSize = new AtomicLong();
+		AtomicLong outputSize = new AtomicLong();
+		List<String> missing = new ArrayList<>();
+		List<String> optional = new ArrayList<>();
+		
+		@Override
+		public void transformCompleted(CompiledTemplate template, long records, long nanos) {
+			completed.incrementAndGet();
+			this.records.addAndGet(records);
+		}
+		
+		@Override
+		public synchronized void missingAttribute(CompiledTemplate template, String attributeName) {
+			missing.add(template.getName() + ":" + attributeName);
+		}
+		
+		@Override
+		public synchronized void optionalDefaultUsed(CompiledTemplate template, PropertyPath path) {
+			defaults.incrementAndGet();
+			optional.add(template.getName() + ":" + path);
+		}
+		
+		@Override
+		public void inputParsed(CompiledTemplate template, long size, long nanos) {
+			inputSize.addAndGet(size);
+		}
+		
+		@Override
+		public void outputWritten(CompiledTemplate template, long size, long nanos) {
+			outputSize.addAndGet(size);
+		}
+	}
+	
+	@After
+	public void removeListener() {
+		ObjectTransformer.setTransformListener(null);
+	}
+	
+	@Test
+	public void metrics() throws ObjectTransformerException {
+		CountingListener listener = new CountingListener();
+		ObjectTransformer.setTransformListener(listener);
+		
+		String output = JsonTransformer.transform(TEMPLATE, INPUT);
+		assertEquals(1, listener.completed.get());
+		assertEquals(2, listener.records.get());
+		assertEquals(1, listener.defaults.get());
+		assertEquals(INPUT.length(), listener.inputSize.get());
+		assertEquals(output.length(), listener.outputSize.get());
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JsonTransformer.transform(JsonTransformer.compile(TEMPLATE), new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)), bytes);
+		assertEquals(2 * INPUT.length(), listener.inputSize.get());
+		assertEquals(output.length() + bytes.size(), listener.outputSize.get());
+		
+		JsonTransformer.transformToObject(TEMPLATE, INPUT);
+		assertEquals(3, listener.completed.get());
+		assertEquals(6, listener.records.get());
+		
+		StringWriter all = new StringWriter();
+		JsonTransformer.transformAll(TEMPLATE, Arrays.asList(INPUT, INPUT), all, JsonLayout.NDJSON);
+		assertEquals(5 * INPUT.length(), listener.inputSize.get());
+		assertEquals(output.length() + bytes.size() + all.toString().length(), listener.outputSize.get());
+	}
+	
+	@Test
+	public void missingAttribute() throws ObjectTransformerException {
+		CountingListener listener = new CountingListener();
+		ObjectTransformer.setTransformListener(listener);
+		
+		try {
+			JsonTransformer.transform(JsonTransformer.compile(TEMPLATE).withName("people"), "{\"apellido\": \"Mos\"}");
+			fail("The missing attribute was not reported");
+		} catch(ObjectTransformerException e) {
+			assertEquals(1, listener.missing.size());
+			assertEquals("people:nombre", listener.missing.get(0));
+		}
+		
+		// Also reported when the missing attributes are collected or read from a lazy result
+		CompiledTemplate template = JsonTransformer.compile(TEMPLATE).withName("lazy");
+		Map<String, Object> input = Collections.singletonMap("apellido", "Mos");
+		assertEquals(Arrays.asList("nombre"), template.tryTransform(input).getMissingAttributes());
+		Map<?, ?> result = (Map<?, ?>)template.transformLazy(input);
+		assertEquals("Sr.", result.get("title"));
+		try {
+			result.get("name");
+			fail("The missing attribute was not reported");
+		} catch(UncheckedTransformerException e) {
+			assertEquals(Arrays.asList("people:nombre", "lazy:nombre", "lazy:nombre"), listener.missing);
+		}
+	}
+	
+	@Test
+	public void optionalDefaultUsed() throws ObjectTransformerException {
+		CountingListener listener = new CountingListener();
+		ObjectTransformer.setTransformListener(listener);
+		
+		CompiledTemplate template = JsonTransformer.compile("{\"name\": \"=nombre\", \"label\": \"${titulo?Sr.} ${nombre}\"}").withName("people");
+		Map<String, Object> input = Collections.singletonMap("nombre", "Martin");
+		assertEquals("Sr. Martin", ((Map<?, ?>)template.transform(input)).get("label"));
+		assertEquals(Arrays.asList("people:titulo?Sr."), listener.optional);
+		
+		// The lookups made outside a template are not reported
+		assertEquals("Sr.", EnhancedObjectNavigator.findValue(input, "titulo?Sr."));
+		assertEquals("Sr. Martin", StringTemplate.replace("${titulo?Sr.} ${nombre}", input));
+		assertEquals(1, listener.defaults.get());
+	}
+}